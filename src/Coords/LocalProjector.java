@@ -0,0 +1,140 @@
+package Coords;
+
+import GeoObjects.Point3D;
+
+/**
+ * This class computes distances and azimuths between gps points near some origin (the map),
+ * on primitive doubles and without creating objects.
+ * The trigonometry of the origin is computed once in the constructor.
+ *
+ * There are two modes:
+ * EXACT - the same formulas of {@link MyCoords} (sin of the differences, cos of the first latitude,
+ * and the great circle azimuth), so the results are the same.
+ * PLANAR - the earth near the origin is a plane (equirectangular): a degree of latitude is a fixed number of meters,
+ * and a degree of longitude changes linearly with the latitude. Only sqrt and atan2 for every call.
+ * In 2 km from the origin, the distance differs from EXACT in less than 1E-6 of the distance (1 mm for 1 km),
+ * and the azimuth in less than 0.0001 degree.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class LocalProjector {
+
+	public enum Mode {EXACT, PLANAR}
+
+	private static final double EARTH_RADIUS = 6371000;
+	private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+
+	private final Mode mode;
+	private final double originLat;
+	private final double originLon;
+	private final double metersPerLat; //north meters of one degree latitude
+	private final double metersPerLon; //east meters of one degree longitude, at the origin
+	private final double lonShrink; //how much metersPerLon gets smaller for one degree to the north (the derivative of cos)
+	private final double halfConvergence; //the meridians get closer, the azimuth turns in sin(lat)/2 degree for one degree of longitude
+
+////////////////////////***Constructors****///////////////////////////////////////////
+
+	public LocalProjector(Point3D origin, Mode mode) {
+		this(origin.x(), origin.y(), mode);
+	}
+
+	public LocalProjector(double originLat, double originLon, Mode mode) {
+		this.mode = mode;
+		this.originLat = originLat;
+		this.originLon = originLon;
+		metersPerLat = METERS_PER_DEGREE;
+		metersPerLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLat));
+		lonShrink = METERS_PER_DEGREE * Math.sin(Math.toRadians(originLat)) * Math.PI / 180;
+		halfConvergence = Math.sin(Math.toRadians(originLat)) / 2;
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	// the meters to the north of the origin (PLANAR).
+	public double north(double lat) {
+		return (lat - originLat) * metersPerLat;
+	}
+
+	// the meters to the east of the origin (PLANAR).
+	public double east(double lon) {
+		return (lon - originLon) * metersPerLon;
+	}
+
+	/**
+	 * This method computes the distance on the ground between two points.
+	 * @return The distance in meters.
+	 */
+	public double distance2D(double lat0, double lon0, double lat1, double lon1) {
+		return Math.sqrt(groundSquared(lat0, lon0, lat1, lon1));
+	}
+
+	/**
+	 * This method computes the distance between two points, with the altitude.
+	 * @return The distance in meters.
+	 */
+	public double distance3D(double lat0, double lon0, double alt0, double lat1, double lon1, double alt1) {
+		double up = alt1 - alt0;
+		return Math.sqrt(groundSquared(lat0, lon0, lat1, lon1) + up*up);
+	}
+
+	//the square of the distance on the ground, in meters
+	private double groundSquared(double lat0, double lon0, double lat1, double lon1) {
+		double north;
+		double east;
+		if (mode == Mode.PLANAR) {
+			north = (lat1 - lat0) * metersPerLat;
+			east = (lon1 - lon0) * lonScale(lat0); //like EXACT, the longitude is measured on the latitude of the first point
+		}
+		else { //like MyCoords.vector3D
+			north = Math.sin((lat1 - lat0)*Math.PI/180) * EARTH_RADIUS;
+			east = Math.sin((lon1 - lon0)*Math.PI/180) * EARTH_RADIUS * Math.cos(lat0*Math.PI/180);
+		}
+		return north*north + east*east;
+	}
+
+	/**
+	 * This method computes the azimuth from the first point to the second.
+	 * @return The azimuth in degrees, in [0,360).
+	 */
+	public double azimuth(double lat0, double lon0, double lat1, double lon1) {
+		double azimuth;
+		if (mode == Mode.PLANAR) { //the direction on the middle latitude, turned back to the first point
+			azimuth = Math.toDegrees(Math.atan2((lon1 - lon0) * lonScale((lat0 + lat1) / 2), (lat1 - lat0) * metersPerLat));
+			azimuth -= (lon1 - lon0) * halfConvergence;
+		}
+		else { //like MyCoords.azimuth
+			double lat0Radian = Math.toRadians(lat0);
+			double lat1Radian = Math.toRadians(lat1);
+			double diffLonRadian = Math.toRadians(lon1 - lon0);
+			double numerator = Math.sin(diffLonRadian) * Math.cos(lat1Radian);
+			double denominator = Math.cos(lat0Radian)*Math.sin(lat1Radian) - Math.sin(lat0Radian)*Math.cos(lat1Radian)*Math.cos(diffLonRadian);
+			azimuth = Math.toDegrees(Math.atan2(numerator, denominator));
+		}
+		return (azimuth + 360) % 360;
+	}
+
+	//the meters of one degree longitude on this latitude, cos is linear near the origin
+	private double lonScale(double lat) {
+		return metersPerLon - (lat - originLat) * lonShrink;
+	}
+
+	public double distance2D(Point3D gps0, Point3D gps1) {
+		return distance2D(gps0.x(), gps0.y(), gps1.x(), gps1.y());
+	}
+
+	public double distance3D(Point3D gps0, Point3D gps1) {
+		return distance3D(gps0.x(), gps0.y(), gps0.z(), gps1.x(), gps1.y(), gps1.z());
+	}
+
+	public double azimuth(Point3D gps0, Point3D gps1) {
+		return azimuth(gps0.x(), gps0.y(), gps1.x(), gps1.y());
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public Mode getMode() {
+		return mode;
+	}
+
+}
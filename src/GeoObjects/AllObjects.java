@@ -14,10 +14,11 @@ import guiObjects.Pixel;
  */
 public class AllObjects {
 
-	public Set <Fruit> fruits = new HashSet<Fruit>();
-	public Set <Packman> packmans = new HashSet<Packman>();
-	public Set <Ghost> ghosts = new HashSet<Ghost>();
-	public Set <Box> boxes = new HashSet<Box>();
+	//the objects that move or are eaten are in tables of parallel arrays (see ObjectTable), that are also Sets for the old code
+	public final ObjectTable <Fruit> fruits = new ObjectTable<Fruit>();
+	public final ObjectTable <Packman> packmans = new ObjectTable<Packman>();
+	public final ObjectTable <Ghost> ghosts = new ObjectTable<Ghost>();
+	public Set <Box> boxes = new HashSet<Box>(); //the boxes do not move, their pixels are cached in Box
 	public Player player;
 
 //////////////////////////****************/////////////////////////////////////////
@@ -16,6 +16,7 @@ public class Box {
 	private Point3D ne;
 	private Point3D sw;
 	private MyCoords mc = new MyCoords();
+	private volatile Geometry geometry; //the pixels of the box on the last board, computed again only if the board was changed
 
 ////////////////////////***Constructor****///////////////////////////////////////////
 
@@ -42,18 +43,28 @@ public class Box {
 
 ///////////////////////////*** Methods ***//////////////////////////////////////////
 
+	/**
+	 * This method returns the pixels of the box on this board.
+	 * They are computed once for the map and the size of the board, and computed again after resize.
+	 * @param board The board of the game.
+	 * @return The pixels of the box.
+	 */
+	public Geometry getGeometry(PanelBoard board) {
+		Geometry geometry = this.geometry;
+		if (geometry == null || !geometry.isFor(board.map, board.getWidth(), board.getHeight())) {
+			geometry = new Geometry(board.map, board.getWidth(), board.getHeight());
+			this.geometry = geometry;
+		}
+		return geometry;
+	}
+
 	/**
 	 * This method compute the pixels of the corners of the board.
 	 * @param board The board of the game.
 	 * @return An array with the pixels.
 	 */
 	public Pixel[] getPixelsCorners(PanelBoard board) {
-		Pixel[] corners = new Pixel[4];
-		corners[0] = getPixelNe(board);
-		corners[1] = getPixelNw(board);
-		corners[2] = getPixelSw(board);
-		corners[3] = getPixelSe(board);
-		return corners;
+		return getGeometry(board).corners.clone();
 	}
 
 ///////////////////////////////////////////////////////////////////////////////////////////////////	
@@ -62,25 +73,19 @@ public class Box {
 	
 	
 	public Pixel getPixelNw(PanelBoard board) {
-		Pixel nePixel = board.map.gps2pixel(ne, board.getWidth(), board.getHeight());
-		Pixel swPixel = board.map.gps2pixel(sw, board.getWidth(), board.getHeight());
-		return new Pixel(swPixel.x()-2, nePixel.y()-2);
+		return getGeometry(board).corners[1];
 	}
 
 	public Pixel getPixelSe(PanelBoard board) {
-		Pixel nePixel = board.map.gps2pixel(ne, board.getWidth(), board.getHeight());
-		Pixel swPixel = board.map.gps2pixel(sw, board.getWidth(), board.getHeight());
-		return new Pixel(nePixel.x()+2, swPixel.y()+2);
+		return getGeometry(board).corners[3];
 	}
 	
 	public Pixel getPixelSw(PanelBoard board) {
-		Pixel swPixel = board.map.gps2pixel(sw, board.getWidth(), board.getHeight());
-		return new Pixel(swPixel.x()-2, swPixel.y()+2);
+		return getGeometry(board).corners[2];
 	}
 	
 	public Pixel getPixelNe(PanelBoard board) {
-		Pixel nePixel = board.map.gps2pixel(ne, board.getWidth(), board.getHeight());
-		return new Pixel(nePixel.x()+2, nePixel.y()-2);
+		return getGeometry(board).corners[0];
 	}
 	
 ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -91,12 +96,7 @@ public class Box {
 	 * @return An array with the segments.
 	 */
 	public Segment[] getFrame(PanelBoard board) {
-		Segment[] frame = new Segment[4];
-		frame[0] = getDownSegment(board);
-		frame[1] = getUpSegment(board);
-		frame[2] = getLeftSegment(board);
-		frame[3] = getRightSegment(board);
-		return frame;
+		return getGeometry(board).frame.clone();
 	}
 	
 ///////////////////////////////////////////////////////////////////////////////////////////////////	
@@ -104,33 +104,69 @@ public class Box {
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	public Segment getDownSegment(PanelBoard board) {
-		Pixel sePixel = getPixelSe(board);
-		Pixel swPixel = getPixelSw(board);
-		Line line = new Line(sePixel, swPixel);
-		return new Segment(line, sePixel, swPixel);
+		return getGeometry(board).frame[0];
 	}
 	
 	public Segment getUpSegment(PanelBoard board) {
-		Pixel nePixel = getPixelNe(board);
-		Pixel nwPixel = getPixelNw(board);
-		Line line = new Line(nePixel, nwPixel);
-		return new Segment(line, nePixel, nwPixel);
+		return getGeometry(board).frame[1];
 	}
 	
 	public Segment getLeftSegment(PanelBoard board) {
-		Pixel nwPixel = getPixelNw(board);
-		Pixel swPixel = getPixelSw(board);
-		Line line = new Line(nwPixel, swPixel);
-		return new Segment(line, nwPixel, swPixel);
+		return getGeometry(board).frame[2];
 	}
 	
 	public Segment getRightSegment(PanelBoard board) {
-		Pixel nePixel = getPixelNe(board);
-		Pixel sePixel = getPixelSe(board);
-		Line line = new Line(nePixel, sePixel);
-		return new Segment(line, nePixel, sePixel);
+		return getGeometry(board).frame[3];
 	}
-	
 
-	
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * The pixels of the box on a board of some size.
+	 * The corners and the frame have margin of 2 pixels around the box, the bounds are the box itself.
+	 * Nothing here is changed after it was built, so the board and the algorithm can share it.
+	 */
+	public class Geometry {
+
+		private final Map map;
+		private final int width;
+		private final int height;
+
+		public final Pixel[] corners; //ne, nw, sw, se
+		public final Segment[] frame; //down, up, left, right
+		public final int left; //the bounds of the box, without margin
+		public final int top;
+		public final int right;
+		public final int bottom;
+
+		private Geometry(Map map, int width, int height) {
+			this.map = map;
+			this.width = width;
+			this.height = height;
+
+			Pixel nePixel = map.gps2pixel(ne, width, height);
+			Pixel swPixel = map.gps2pixel(sw, width, height);
+			left = swPixel.x();
+			top = nePixel.y();
+			right = nePixel.x();
+			bottom = swPixel.y();
+
+			Pixel nePixelMargin = new Pixel(right+2, top-2);
+			Pixel nwPixelMargin = new Pixel(left-2, top-2);
+			Pixel swPixelMargin = new Pixel(left-2, bottom+2);
+			Pixel sePixelMargin = new Pixel(right+2, bottom+2);
+			corners = new Pixel[] {nePixelMargin, nwPixelMargin, swPixelMargin, sePixelMargin};
+
+			frame = new Segment[4];
+			frame[0] = new Segment(new Line(sePixelMargin, swPixelMargin), sePixelMargin, swPixelMargin);
+			frame[1] = new Segment(new Line(nePixelMargin, nwPixelMargin), nePixelMargin, nwPixelMargin);
+			frame[2] = new Segment(new Line(nwPixelMargin, swPixelMargin), nwPixelMargin, swPixelMargin);
+			frame[3] = new Segment(new Line(nePixelMargin, sePixelMargin), nePixelMargin, sePixelMargin);
+		}
+
+		// is this geometry computed for this map and board size
+		boolean isFor(Map map, int width, int height) {
+			return this.map == map && this.width == width && this.height == height;
+		}
+	}
 }
@@ -1,5 +1,5 @@
 package GeoObjects;
-import Coords.MyCoords;
+import Coords.LocalProjector;
 import guiObjects.Pixel;
 
 /**
@@ -19,6 +19,7 @@ public class GenericGeoObject {
 	private double spd_wt;
 	private double radius;
 	private String imagePath;
+	private static final LocalProjector exact = new LocalProjector(0, 0, LocalProjector.Mode.EXACT); //the distances of MyCoords, without new objects
 	
 ////////////////////////***Constructor****///////////////////////////////////////////
 
@@ -70,8 +71,7 @@ public class GenericGeoObject {
 	 * @return The distance in double type.
 	 */
 	public double distance(GenericGeoObject other) {
-		MyCoords mc = new MyCoords();
-		return mc.distance3d(location, other.location);
+		return exact.distance3D(location, other.location);
 	}
 	
 	@Override
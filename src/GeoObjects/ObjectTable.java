@@ -0,0 +1,299 @@
+package GeoObjects;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class keeps the objects of one kind (fruits, packmans...) in parallel arrays:
+ * every object has a slot, and the id, lat, lon and alt of the slot are in primitive arrays,
+ * so loops on the locations read only the arrays and not the objects.
+ * A removed object only clears the bit of his slot (no copying), and clear keeps the arrays for the next game.
+ *
+ * The table is also a Set of the objects, so the old code (for-each, size, isEmpty...) works as before.
+ * The order of the iteration is the order of the slots (the order of adding), the same in every run.
+ *
+ * @author Yoav and Elad.
+ *
+ * @param <T> The kind of the objects.
+ */
+public class ObjectTable<T extends GenericGeoObject> extends AbstractSet<T> {
+
+	private GenericGeoObject[] objects = new GenericGeoObject[16];
+	private int[] ids = new int[16];
+	private double[] lat = new double[16];
+	private double[] lon = new double[16];
+	private double[] alt = new double[16];
+	private final BitSet alive = new BitSet(); //the slots of the objects that are in the table
+	private int[] keys = new int[32]; //id -> the last slot with this id, a hash table of ints (no Integer objects)
+	private int[] values = emptyValues(32); //-1 for an empty place
+	private int mapped = 0; //how many ids are in the hash table
+	private int used = 0; //the slots 0..used-1 were given
+	private int size = 0;
+	private int duplicates = 0; //how many times an object was added with an id that was in the table
+	private int modifications = 0; //changed in every add, remove, move and clear (a paint can see that nothing changed)
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method adds an object in a new slot.
+	 * @param object The object.
+	 * @return False if the object is already in the table.
+	 */
+	@Override
+	public boolean add(T object) {
+		if (contains(object))
+			return false;
+		if (used == objects.length) {
+			int length = used*2;
+			objects = Arrays.copyOf(objects, length);
+			ids = Arrays.copyOf(ids, length);
+			lat = Arrays.copyOf(lat, length);
+			lon = Arrays.copyOf(lon, length);
+			alt = Arrays.copyOf(alt, length);
+		}
+		int slot = used++;
+		objects[slot] = object;
+		ids[slot] = object.getId();
+		write(slot, object.getLocation());
+		alive.set(slot);
+		if (map(object.getId(), slot) != -1)
+			duplicates++;
+		size++;
+		modifications++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		int slot = slotOf(object);
+		if (slot == -1)
+			return false;
+		removeSlot(slot);
+		return true;
+	}
+
+	/**
+	 * This method removes the object with this id.
+	 * @param id The id.
+	 * @return The removed object, or null if there is no object with this id.
+	 */
+	public T removeId(int id) {
+		int slot = slot(id);
+		if (slot == -1)
+			return null;
+		T object = get(slot);
+		removeSlot(slot);
+		return object;
+	}
+
+	private void removeSlot(int slot) {
+		alive.clear(slot); //the object stays in his slot until clear, so a paint that reads the table now still gets him
+		if (slot(ids[slot]) == slot) {
+			unmap(ids[slot]);
+			if (duplicates > 0) //maybe other object has this id
+				for (int other = alive.nextSetBit(0); other >= 0; other = alive.nextSetBit(other+1))
+					if (ids[other] == ids[slot])
+						map(ids[other], other);
+		}
+		size--;
+		modifications++;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return slotOf(object) != -1;
+	}
+
+	//the slot of this object (the same object, like the old identity sets), or -1
+	private int slotOf(Object object) {
+		if (!(object instanceof GenericGeoObject))
+			return -1;
+		int slot = slot(((GenericGeoObject)object).getId());
+		if (slot != -1 && objects[slot] == object)
+			return slot;
+		if (duplicates == 0) //every id has one object
+			return -1;
+		for (slot = alive.nextSetBit(0); slot >= 0; slot = alive.nextSetBit(slot+1)) //two objects with one id, rare
+			if (objects[slot] == object)
+				return slot;
+		return -1;
+	}
+
+	/**
+	 * This method moves the object in the slot, the object and the arrays are updated together.
+	 * @param slot The slot.
+	 * @param location The new location.
+	 */
+	public void setLocation(int slot, Point3D location) {
+		objects[slot].setLocation(location);
+		write(slot, location);
+		modifications++;
+	}
+
+	private void write(int slot, Point3D location) {
+		lat[slot] = location.x();
+		lon[slot] = location.y();
+		alt[slot] = location.z();
+	}
+
+	// removes all the objects, the arrays are kept.
+	@Override
+	public void clear() {
+		Arrays.fill(objects, 0, used, null);
+		alive.clear();
+		Arrays.fill(values, -1);
+		mapped = 0;
+		duplicates = 0;
+		used = 0;
+		size = 0;
+		modifications++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int next = alive.nextSetBit(0);
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public T next() {
+				if (next < 0)
+					throw new NoSuchElementException();
+				last = next;
+				next = alive.nextSetBit(next+1);
+				return get(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last == -1)
+					throw new IllegalStateException();
+				removeSlot(last);
+				last = -1;
+			}
+		};
+	}
+
+	/**
+	 * This method returns the first slot of an object, loops on the slots are:
+	 * for (int slot=table.first(); slot>=0; slot=table.next(slot))
+	 * @return The first slot, or -1 if the table is empty.
+	 */
+	public int first() {
+		return alive.nextSetBit(0);
+	}
+
+	// the next slot of an object after this slot, or -1.
+	public int next(int slot) {
+		return alive.nextSetBit(slot+1);
+	}
+
+	// the slot of the object with this id, or -1.
+	public int slot(int id) {
+		for (int place = hash(id); ; place = (place+1) & (keys.length-1)) {
+			if (values[place] == -1)
+				return -1;
+			if (keys[place] == id)
+				return values[place];
+		}
+	}
+
+	//puts the slot of the id in the hash table, returns the old slot or -1
+	private int map(int id, int slot) {
+		if (2*(mapped+1) > keys.length)
+			rehash(keys.length*2);
+		int place = hash(id);
+		while (values[place] != -1 && keys[place] != id)
+			place = (place+1) & (keys.length-1);
+		int old = values[place];
+		if (old == -1)
+			mapped++;
+		keys[place] = id;
+		values[place] = slot;
+		return old;
+	}
+
+	//removes the id from the hash table, the next ids are moved back so the search does not stop on the hole
+	private void unmap(int id) {
+		int mask = keys.length-1;
+		int place = hash(id);
+		while (values[place] != -1 && keys[place] != id)
+			place = (place+1) & mask;
+		if (values[place] == -1)
+			return;
+		mapped--;
+		int hole = place;
+		for (place = (place+1) & mask; values[place] != -1; place = (place+1) & mask) {
+			int home = hash(keys[place]);
+			//move it to the hole if the hole is between his home and his place (cyclic)
+			if (((place - home) & mask) >= ((place - hole) & mask)) {
+				keys[hole] = keys[place];
+				values[hole] = values[place];
+				hole = place;
+			}
+		}
+		values[hole] = -1;
+	}
+
+	private void rehash(int length) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[length];
+		values = emptyValues(length);
+		mapped = 0;
+		for (int i=0; i<oldKeys.length; i++)
+			if (oldValues[i] != -1)
+				map(oldKeys[i], oldValues[i]);
+	}
+
+	private int hash(int id) {
+		return (id * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(keys.length)); //the high bits, keys.length is a power of two
+	}
+
+	private static int[] emptyValues(int length) {
+		int[] values = new int[length];
+		Arrays.fill(values, -1);
+		return values;
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	@SuppressWarnings("unchecked")
+	public T get(int slot) {
+		return (T)objects[slot];
+	}
+
+	public int getId(int slot) {
+		return ids[slot];
+	}
+
+	public double getLat(int slot) {
+		return lat[slot];
+	}
+
+	public double getLon(int slot) {
+		return lon[slot];
+	}
+
+	public double getAlt(int slot) {
+		return alt[slot];
+	}
+
+	public int getModifications() {
+		return modifications;
+	}
+
+}
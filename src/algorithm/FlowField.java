@@ -0,0 +1,310 @@
+package algorithm;
+
+import java.util.Arrays;
+
+import GeoObjects.AllObjects;
+import GeoObjects.Box;
+import gui.PanelBoard;
+import guiObjects.Pixel;
+import guiObjects.PixelBuffer;
+
+/**
+ * This class is the flow field algorithm, other option to the corners graph of {@link Shortest}.
+ * The board is divided to cells (the size of a cell is the resolution), and the cells of the boxes are blocked.
+ * When the fruits and the packmans change, one Dijkstra runs from all of them together on the cells,
+ * so every cell knows his distance to the closest fruit or packman (distance transform).
+ * Then the player only goes down the distances: choosing the next cell is looking at the 8 cells around him,
+ * no matter how many fruits there are.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class FlowField implements Planner {
+
+	public static final int DEFAULT_CELL_SIZE = 4; //in pixels
+	private static final int LOOK_AHEAD = 5; //how many cells the player looks forward on the way
+	private static final int GHOST_DANGER = 30; //in pixels, like in Shortest
+	private static final int BORDER = 2; //free cells around the boxes, the player can go around a box on the border of the board
+	private static final double DIAGONAL = Math.sqrt(2);
+	private static final int[] DX = {1, -1, 0, 0, 1, 1, -1, -1};
+	private static final int[] DY = {0, 0, 1, -1, 1, -1, 1, -1};
+
+	private AllObjects game;
+	private PanelBoard board;
+
+	private final int cellSize;
+	private int left; //the pixel of the first cell, the grid covers the board and all the boxes
+	private int top;
+	private int width = -1; //the board size that the grid was built for
+	private int height = -1;
+	private int columns;
+	private int rows;
+	private boolean[] blocked;
+	private double[] distance; //the distance (in pixels) from every cell to the closest fruit or packman
+	private int[] sources = new int[0]; //the cells of the fruits and packmans, that the distances computed for
+	private int[] currentSources = new int[0];
+	private Pixel[] sourcePixel; //the pixel of the fruit or packman in every source cell
+	private IndexMinHeap heap;
+	private final PixelBuffer objects = new PixelBuffer(); //the pixels of the fruits and the packmans, converted once in every refresh
+	private final PixelBuffer ghostPixels = new PixelBuffer();
+	private int updates = 0;
+
+////////////////////////***Constructors****///////////////////////////////////////////
+
+	public FlowField(AllObjects game, PanelBoard board) {
+		this(game, board, DEFAULT_CELL_SIZE);
+	}
+
+	public FlowField(AllObjects game, PanelBoard board, int cellSize) {
+		this.cellSize = cellSize;
+		refresh(game, board);
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method refresh the game, builds the grid again if the board was resized,
+	 * and computes the distances again only if the fruits or the packmans were changed.
+	 * @param game new updated game
+	 * @param board new updated board
+	 */
+	@Override
+	public void refresh(AllObjects game, PanelBoard board) {
+		this.game = game;
+		this.board = board;
+		if (board.getWidth() != width || board.getHeight() != height) {
+			buildGrid();
+			sources = new int[0];
+		}
+
+		objects.clear();
+		objects.addAll(game.fruits);
+		objects.addAll(game.packmans);
+		objects.project(board.map, board.getWidth(), board.getHeight());
+		ghostPixels.project(game.ghosts, board.map, board.getWidth(), board.getHeight());
+
+		//the cells of the fruits and the packmans, sorted to compare with the last ones
+		if (currentSources.length != objects.size())
+			currentSources = new int[objects.size()];
+		for (int i=0; i<objects.size(); i++)
+			currentSources[i] = cellOf(objects.x[i], objects.y[i]);
+		Arrays.sort(currentSources);
+
+		if (!Arrays.equals(sources, currentSources)) {
+			for (int source: sources)
+				sourcePixel[source] = null;
+			int[] temp = sources;
+			sources = currentSources;
+			currentSources = temp;
+			computeDistances();
+		}
+		for (int i=0; i<objects.size(); i++)
+			sourcePixel[cellOf(objects.x[i], objects.y[i])] = objects.getPixel(i);
+	}
+
+	/**
+	 * This method rasterizes the boxes (with their corners margin) into blocked cells.
+	 */
+	private void buildGrid() {
+		width = board.getWidth();
+		height = board.getHeight();
+		int right = width;
+		int bottom = height;
+		left = 0;
+		top = 0;
+		for (Box box: game.boxes) {
+			left = Math.min(left, box.getPixelNw(board).x());
+			top = Math.min(top, box.getPixelNw(board).y());
+			right = Math.max(right, box.getPixelSe(board).x());
+			bottom = Math.max(bottom, box.getPixelSe(board).y());
+		}
+		left -= BORDER*cellSize;
+		top -= BORDER*cellSize;
+		columns = (right + BORDER*cellSize - left) / cellSize + 1;
+		rows = (bottom + BORDER*cellSize - top) / cellSize + 1;
+		blocked = new boolean[columns*rows];
+		distance = new double[columns*rows];
+		sourcePixel = new Pixel[columns*rows];
+		heap = new IndexMinHeap(columns*rows);
+
+		for (Box box: game.boxes) {
+			Pixel nw = box.getPixelNw(board);
+			Pixel se = box.getPixelSe(board);
+			for (int row=row(nw.y()); row<=row(se.y()); row++)
+				for (int column=column(nw.x()); column<=column(se.x()); column++)
+					blocked[row*columns + column] = true;
+		}
+	}
+
+	/**
+	 * This method computes the distance from every cell to the closest source (multi source Dijkstra).
+	 */
+	private void computeDistances() {
+		updates++;
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		heap.clear();
+		for (int source: sources) {
+			distance[source] = 0;
+			heap.push(source, 0);
+		}
+
+		while (!heap.isEmpty()) {
+			int cell = heap.pop();
+			int column = cell % columns;
+			int row = cell / columns;
+			for (int d=0; d<DX.length; d++) {
+				int next = neighbour(column, row, d);
+				if (next == -1)
+					continue;
+				double newDistance = distance[cell] + (d < 4 ? cellSize : cellSize*DIAGONAL);
+				if (newDistance < distance[next]) {
+					distance[next] = newDistance;
+					heap.push(next, newDistance);
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method finds where to go: away from a close ghost, or down the distances to the closest fruit.
+	 * @param source The location of the player.
+	 * @return The pixel to go, or null if no fruit can be reached.
+	 */
+	@Override
+	public Pixel findPath(Pixel source) {
+		int cell = freeCellNear(column(source.x()), row(source.y()));
+		if (cell == -1)
+			return null;
+
+		Pixel ghost = closestGhost(source);
+		if (ghost != null && source.distance(ghost) <= GHOST_DANGER)
+			return runAway(cell, ghost);
+
+		if (distance[cell] == Double.POSITIVE_INFINITY)
+			return null; //no fruit can be reached from here
+
+		//go down the distances, some cells forward
+		for (int step=0; step<LOOK_AHEAD && distance[cell] > 0; step++) {
+			int next = downhill(cell);
+			if (next == -1)
+				break;
+			cell = next;
+		}
+		if (distance[cell] == 0) //the cell of a fruit, go to the fruit itself
+			return sourcePixel[cell];
+		return center(cell);
+	}
+
+	//the neighbour with the smallest distance, -1 if there is no smaller distance around.
+	//a fruit on the margin of a box is in a blocked cell, but the player can still get to it
+	private int downhill(int cell) {
+		int column = cell % columns;
+		int row = cell / columns;
+		int best = -1;
+		double bestDistance = distance[cell];
+		for (int d=0; d<DX.length; d++) {
+			int next = neighbour(column, row, d);
+			if (next == -1 && sourcePixel[cellAt(column + DX[d], row + DY[d])] != null)
+				next = cellAt(column + DX[d], row + DY[d]);
+			if (next != -1 && distance[next] < bestDistance) {
+				bestDistance = distance[next];
+				best = next;
+			}
+		}
+		return best;
+	}
+
+	//the free neighbour that goes away from the ghost the most, and closer to the fruits if equal
+	private Pixel runAway(int cell, Pixel ghost) {
+		int column = cell % columns;
+		int row = cell / columns;
+		int best = cell;
+		double bestGhost = center(cell).distance(ghost);
+		for (int d=0; d<DX.length; d++) {
+			int next = neighbour(column, row, d);
+			if (next == -1)
+				continue;
+			double fromGhost = center(next).distance(ghost);
+			if (fromGhost > bestGhost || (fromGhost == bestGhost && distance[next] < distance[best])) {
+				bestGhost = fromGhost;
+				best = next;
+			}
+		}
+		return center(best);
+	}
+
+	//the closest ghost to the source
+	private Pixel closestGhost(Pixel source) {
+		Pixel closestPixel = null;
+		double minDistance = Double.MAX_VALUE;
+		for (int i=0; i<ghostPixels.size(); i++) {
+			Pixel ghostPixel = ghostPixels.getPixel(i);
+			if (source.distance(ghostPixel) < minDistance) {
+				minDistance = source.distance(ghostPixel);
+				closestPixel = ghostPixel;
+			}
+		}
+		return closestPixel;
+	}
+
+	/**
+	 * This method returns the neighbour cell in direction d, if it is free.
+	 * A diagonal move is free only if the two cells next to it are free too (the player does not cut the box corner).
+	 * @return The neighbour cell, or -1.
+	 */
+	private int neighbour(int column, int row, int d) {
+		int nextColumn = column + DX[d];
+		int nextRow = row + DY[d];
+		if (nextColumn < 0 || nextColumn >= columns || nextRow < 0 || nextRow >= rows)
+			return -1;
+		int next = nextRow*columns + nextColumn;
+		if (blocked[next])
+			return -1;
+		if (d >= 4 && (blocked[row*columns + nextColumn] || blocked[nextRow*columns + column]))
+			return -1;
+		return next;
+	}
+
+	//the cell itself, or the closest free cell around it (if the player is on the margin of a box)
+	private int freeCellNear(int column, int row) {
+		for (int radius=0; radius<Math.max(columns, rows); radius++)
+			for (int r=Math.max(0, row-radius); r<=Math.min(rows-1, row+radius); r++)
+				for (int c=Math.max(0, column-radius); c<=Math.min(columns-1, column+radius); c++)
+					if (!blocked[r*columns + c] && (Math.abs(r-row) == radius || Math.abs(c-column) == radius))
+						return r*columns + c;
+		return -1;
+	}
+
+	private int cellOf(int x, int y) {
+		return row(y)*columns + column(x);
+	}
+
+	//the cell in this column and row, the border cell if it is out of the grid
+	private int cellAt(int column, int row) {
+		return Math.max(0, Math.min(rows-1, row))*columns + Math.max(0, Math.min(columns-1, column));
+	}
+
+	private Pixel center(int cell) {
+		return new Pixel(left + (cell % columns)*cellSize + cellSize/2, top + (cell / columns)*cellSize + cellSize/2);
+	}
+
+	//pixels out of the grid are in the cells on the border
+	private int column(int x) {
+		return Math.max(0, Math.min(columns-1, Math.floorDiv(x - left, cellSize)));
+	}
+
+	private int row(int y) {
+		return Math.max(0, Math.min(rows-1, Math.floorDiv(y - top, cellSize)));
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	// how many times the distances were computed.
+	public int getUpdates() {
+		return updates;
+	}
+}
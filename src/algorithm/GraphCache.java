@@ -0,0 +1,144 @@
+package algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import GeoObjects.Box;
+import guiObjects.Pixel;
+
+/**
+ * This class keeps the corners graph of the last scenario, so a new Shortest on the same
+ * boxes and the same board size (Try Again, Auto start, the game thread) don't build it again.
+ * The graph is keyed by the boxes locations and the board size, so a resize or other boxes
+ * will never get a wrong graph.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class GraphCache {
+
+	private Key key;
+	private Entry entry;
+	private int hits = 0;
+	private int misses = 0;
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method returns the cached graph of this key.
+	 * @param key The boxes and the board size.
+	 * @return The cached graph, or null if it was not computed yet.
+	 */
+	public synchronized Entry get(Key key) {
+		if (entry != null && key.equals(this.key)) {
+			hits++;
+			return entry;
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * This method saves a new computed graph, instead of the old one.
+	 * @param key The boxes and the board size.
+	 * @param corners The corners array (corners[0] is saved for the source).
+	 * @param matrixCorners The graph of the corners.
+	 * @param grid The frames of the boxes in the grid.
+	 * @return The saved graph.
+	 */
+	public synchronized Entry put(Key key, Pixel[] corners, BitSet[] matrixCorners, SegmentGrid grid) {
+		this.key = key;
+		entry = new Entry(corners, matrixCorners, grid);
+		return entry;
+	}
+
+	// clears the cached graph, for example when the board was resized.
+	public synchronized void invalidate() {
+		key = null;
+		entry = null;
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "GraphCache [hits:" + hits + ", misses:" + misses + "]";
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * The graph that computed for one key.
+	 * Those arrays are shared, so nobody should change them.
+	 */
+	public static class Entry {
+
+		public final Pixel[] corners;
+		public final BitSet[] matrixCorners;
+		public final SegmentGrid grid;
+
+		Entry(Pixel[] corners, BitSet[] matrixCorners, SegmentGrid grid) {
+			this.corners = corners;
+			this.matrixCorners = matrixCorners;
+			this.grid = grid;
+		}
+	}
+
+	/**
+	 * The key of the graph: the board size and the locations of all the boxes.
+	 * The order of the boxes in the set does not matter.
+	 */
+	public static class Key {
+
+		private final int width;
+		private final int height;
+		private final double[] boxes;
+
+		public Key(Collection<Box> boxes, int width, int height) {
+			this.width = width;
+			this.height = height;
+
+			List<double[]> rows = new ArrayList<>();
+			for (Box box: boxes)
+				rows.add(new double[] {box.getSw().x(), box.getSw().y(), box.getNe().x(), box.getNe().y()});
+			rows.sort(new Comparator<double[]>() {
+				@Override
+				public int compare(double[] r1, double[] r2) {
+					for (int i=0; i<r1.length; i++) {
+						int compare = Double.compare(r1[i], r2[i]);
+						if (compare != 0)
+							return compare;
+					}
+					return 0;
+				}
+			});
+
+			this.boxes = new double[rows.size()*4];
+			for (int i=0; i<rows.size(); i++)
+				System.arraycopy(rows.get(i), 0, this.boxes, i*4, 4);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+			Key key = (Key) other;
+			return width == key.width && height == key.height && Arrays.equals(boxes, key.boxes);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31*(31*width + height) + Arrays.hashCode(boxes);
+		}
+	}
+}
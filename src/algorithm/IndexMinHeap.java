@@ -0,0 +1,114 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * This class is a binary min heap of nodes indexes (0..capacity-1), ordered by a double key.
+ * Every node is at most once in the heap, and the key of a node can be decreased,
+ * so the search does not need to add the same node again and again.
+ * Everything is saved in primitive arrays, so using the heap does not create objects.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class IndexMinHeap {
+
+	private final int[] heap; //heap[i] = the node in place i
+	private final int[] position; //position[node] = the place of the node in the heap, -1 if not in the heap
+	private final double[] keys;
+	private int size = 0;
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public IndexMinHeap(int capacity) {
+		heap = new int[capacity];
+		position = new int[capacity];
+		keys = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int node) {
+		return position[node] != -1;
+	}
+
+	// removes all the nodes from the heap.
+	public void clear() {
+		for (int i=0; i<size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	/**
+	 * This method adds a node to the heap, or decreases his key if he is already in the heap.
+	 * @param node The node.
+	 * @param key The new key, if it is bigger than the current key nothing changed.
+	 */
+	public void push(int node, double key) {
+		if (position[node] == -1) {
+			heap[size] = node;
+			position[node] = size;
+			keys[node] = key;
+			siftUp(size++);
+		}
+		else if (key < keys[node]) {
+			keys[node] = key;
+			siftUp(position[node]);
+		}
+	}
+
+	/**
+	 * This method removes the node with the minimal key.
+	 * @return The node with the minimal key.
+	 */
+	public int pop() {
+		int min = heap[0];
+		position[min] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	private void siftUp(int i) {
+		int node = heap[i];
+		while (i > 0) {
+			int parent = (i-1)/2;
+			if (keys[heap[parent]] <= keys[node])
+				break;
+			heap[i] = heap[parent];
+			position[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = node;
+		position[node] = i;
+	}
+
+	private void siftDown(int i) {
+		int node = heap[i];
+		while (2*i+1 < size) {
+			int child = 2*i+1;
+			if (child+1 < size && keys[heap[child+1]] < keys[heap[child]])
+				child++;
+			if (keys[node] <= keys[heap[child]])
+				break;
+			heap[i] = heap[child];
+			position[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = node;
+		position[node] = i;
+	}
+}
@@ -0,0 +1,129 @@
+package algorithm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import guiObjects.Pixel;
+
+/**
+ * This class is the shortest path search on the corners graph.
+ * This is Dijkstra algorithm (or A* when there is a target pixel), on indexes of the corners:
+ * the distances and the predecessors are saved in primitive arrays, and the open nodes in an {@link IndexMinHeap},
+ * so every node is expanded at most once and the search does not copy paths.
+ * The arrays are allocated once, so one engine can be used again for every search on the same graph.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class PathEngine {
+
+	/**
+	 * The condition to stop the search, checked when a node is polled from the heap
+	 * (so the node found is the closest node that reached the goal).
+	 */
+	public interface Goal {
+		boolean reached(int node);
+	}
+
+	private final double[] distance;
+	private final int[] predecessor;
+	private final boolean[] closed;
+	private final IndexMinHeap open;
+	private int source = -1;
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public PathEngine(int size) {
+		distance = new double[size];
+		predecessor = new int[size];
+		closed = new boolean[size];
+		open = new IndexMinHeap(size);
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method search the shortest path from the source to the closest node that reached the goal.
+	 * @param source The index of the source corner.
+	 * @param corners The pixels of the corners, the weight of an arch is the distance between his corners.
+	 * @param graph The graph, bit j of graph[i] is set iff exist free path between (corners[i],corners[j]).
+	 * @param goal When to stop.
+	 * @param target The pixel that the goal is closed to, for A* heuristic (the air distance to the target).
+	 * If null, there is no heuristic (Dijkstra), this must be null if the goal is not the node on target.
+	 * @return The node that found, or -1 if no node reached the goal.
+	 */
+	public int search(int source, Pixel[] corners, BitSet[] graph, Goal goal, Pixel target) {
+		this.source = source;
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		Arrays.fill(predecessor, -1);
+		Arrays.fill(closed, false);
+		open.clear();
+
+		distance[source] = 0;
+		open.push(source, heuristic(corners[source], target));
+		while (!open.isEmpty()) {
+			int node = open.pop();
+			closed[node] = true;
+			if (goal.reached(node))
+				return node;
+
+			for (int next=graph[node].nextSetBit(0); next >= 0; next=graph[node].nextSetBit(next+1)) { //only the neighbours
+				if (closed[next])
+					continue;
+				double newDistance = distance[node] + corners[node].distance(corners[next]);
+				if (newDistance < distance[next]) { //found shorter path to next
+					distance[next] = newDistance;
+					predecessor[next] = node;
+					open.push(next, newDistance + heuristic(corners[next], target));
+				}
+			}
+		}
+		return -1; //not found any node
+	}
+
+	/**
+	 * This method search the shortest path between two corners, using A*.
+	 * @param source The index of the source corner.
+	 * @param target The index of the target corner.
+	 * @param corners The pixels of the corners.
+	 * @param graph The graph of the corners.
+	 * @return The length of the path, or Double.POSITIVE_INFINITY if there is no path.
+	 */
+	public double shortestPath(int source, final int target, Pixel[] corners, BitSet[] graph) {
+		int found = search(source, corners, graph, new Goal() {
+			@Override
+			public boolean reached(int node) {
+				return node == target;
+			}
+		}, corners[target]);
+		return found == -1 ? Double.POSITIVE_INFINITY : distance[found];
+	}
+
+	/**
+	 * This method returns the first node on the path of the last search, from the source to some node.
+	 * @param node The last node of the path.
+	 * @return The node after the source, or the node itself if it is the source.
+	 */
+	public int firstStep(int node) {
+		while (predecessor[node] != -1 && predecessor[node] != source)
+			node = predecessor[node];
+		return node;
+	}
+
+	// the distance from the source in the last search.
+	public double getDistance(int node) {
+		return distance[node];
+	}
+
+	// the node before this node on the path of the last search, -1 for the source.
+	public int getPredecessor(int node) {
+		return predecessor[node];
+	}
+
+	//The air distance is never longer than the path, so A* still finds the shortest path
+	private double heuristic(Pixel node, Pixel target) {
+		if (target == null)
+			return 0;
+		return node.distance(target);
+	}
+}
@@ -0,0 +1,28 @@
+package algorithm;
+
+import GeoObjects.AllObjects;
+import gui.PanelBoard;
+import guiObjects.Pixel;
+
+/**
+ * This interface is an algorithm of the automatic game:
+ * every tick it gets the updated game, and tells where the player should go.
+ * @author Yoav and Elad.
+ *
+ */
+public interface Planner {
+
+	/**
+	 * This method refresh the game and the board, every tick.
+	 * @param game new updated game 
+	 * @param board new updated board
+	 */
+	void refresh(AllObjects game, PanelBoard board);
+
+	/**
+	 * This method calculates where the player should go now.
+	 * @param source the location of the player.
+	 * @return The pixel to go, or null if there is nothing to do.
+	 */
+	Pixel findPath(Pixel source);
+}
@@ -0,0 +1,34 @@
+package algorithm;
+
+import GeoObjects.AllObjects;
+import gui.PanelBoard;
+
+/**
+ * This enum is the algorithms that the automatic game can use.
+ * There are 3 options:
+ * 1. Corners - go every tick to the closest fruit, by search on the corners graph ({@link Shortest}).
+ * 2. Tour - plan the order of all the fruits once, and follow it ({@link TourPlanner}).
+ * 3. Flow field - go down the distances to the closest fruit, on a grid of cells ({@link FlowField}).
+ * @author Yoav and Elad.
+ */
+public enum PlannerType {
+// The options 
+	CORNERS, TOUR, FLOW_FIELD;
+
+	/**
+	 * This method makes the algorithm of this type.
+	 * @param game The game.
+	 * @param board The board of the game.
+	 * @return The algorithm.
+	 */
+	public Planner create(AllObjects game, PanelBoard board) {
+		switch (this) {
+		case TOUR:
+			return new TourPlanner(game, board);
+		case FLOW_FIELD:
+			return new FlowField(game, board);
+		default: //CORNERS
+			return new Shortest(game, board);
+		}
+	}
+}
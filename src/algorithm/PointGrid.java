@@ -0,0 +1,108 @@
+package algorithm;
+
+import guiObjects.Pixel;
+
+/**
+ * This class is a uniform grid (hash grid) of pixels, for finding the pixels that close to some pixel.
+ * Every cell saves the indexes of his pixels, so a radius query checks only the cells around the center,
+ * and not all the pixels.
+ * The grid does not change after it was built, so many threads can query it together.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class PointGrid {
+
+	private final Pixel[] points;
+	private final int cellSize;
+	private final int minX; //the pixel of the first cell, the grid covers all the points
+	private final int minY;
+	private final int columns;
+	private final int rows;
+	private final int[] cellStart; //the points of cell c are cellPoints[cellStart[c]..cellStart[c+1]-1]
+	private final int[] cellPoints;
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public PointGrid(Pixel[] points, int cellSize) {
+		this.points = points;
+		this.cellSize = cellSize;
+
+		int minX = 0, minY = 0, maxX = 0, maxY = 0;
+		if (points.length > 0) {
+			minX = maxX = points[0].x();
+			minY = maxY = points[0].y();
+		}
+		for (Pixel point: points) {
+			minX = Math.min(minX, point.x());
+			minY = Math.min(minY, point.y());
+			maxX = Math.max(maxX, point.x());
+			maxY = Math.max(maxY, point.y());
+		}
+		this.minX = minX;
+		this.minY = minY;
+		columns = (maxX - minX) / cellSize + 1;
+		rows = (maxY - minY) / cellSize + 1;
+
+		//count the points in every cell, then fill them (compressed rows)
+		cellStart = new int[columns*rows + 1];
+		for (Pixel point: points)
+			cellStart[cellOf(point) + 1]++;
+		for (int c=0; c<columns*rows; c++)
+			cellStart[c+1] += cellStart[c];
+		cellPoints = new int[points.length];
+		int[] next = new int[columns*rows];
+		System.arraycopy(cellStart, 0, next, 0, next.length);
+		for (int i=0; i<points.length; i++)
+			cellPoints[next[cellOf(points[i])]++] = i;
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method finds all the points that their distance from the center is less than the radius.
+	 * @param center The center pixel.
+	 * @param radius The radius, in pixels.
+	 * @param result The indexes of the points found are written here (must have place for all the points).
+	 * @return How many points found.
+	 */
+	public int near(Pixel center, double radius, int[] result) {
+		int fromColumn = column((int)Math.floor(center.x() - radius));
+		int toColumn = column((int)Math.ceil(center.x() + radius));
+		int fromRow = row((int)Math.floor(center.y() - radius));
+		int toRow = row((int)Math.ceil(center.y() + radius));
+
+		int found = 0;
+		for (int row=fromRow; row<=toRow; row++)
+			for (int column=fromColumn; column<=toColumn; column++) {
+				int cell = row*columns + column;
+				for (int i=cellStart[cell]; i<cellStart[cell+1]; i++)
+					if (center.distance(points[cellPoints[i]]) < radius)
+						result[found++] = cellPoints[i];
+			}
+		return found;
+	}
+
+	private int cellOf(Pixel point) {
+		return row(point.y())*columns + column(point.x());
+	}
+
+	//pixels out of the grid are in the cells on the border
+	private int column(int x) {
+		return Math.max(0, Math.min(columns-1, Math.floorDiv(x - minX, cellSize)));
+	}
+
+	private int row(int y) {
+		return Math.max(0, Math.min(rows-1, Math.floorDiv(y - minY, cellSize)));
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public Pixel getPoint(int index) {
+		return points[index];
+	}
+
+	public int size() {
+		return points.length;
+	}
+}
@@ -0,0 +1,185 @@
+package algorithm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import Coords.LocalProjector;
+import GeoObjects.AllObjects;
+import GeoObjects.Fruit;
+import GeoObjects.Ghost;
+import GeoObjects.ObjectTable;
+import GeoObjects.Packman;
+import GeoObjects.Player;
+import GeoObjects.Point3D;
+
+/**
+ * This class guesses the game of the next tick, so the planner can work on it before the board comes.
+ * The player and the ghosts are moved by the same step they did from the last tick to this one
+ * (a straight line at the same speed), and the fruits and packmans stay in their places.
+ *
+ * The guess is a separate game ({@link #state}) with his own objects, so a planner on other thread can read it
+ * while the game of the GUI is updated by the next board. When the board comes, {@link #holds(AllObjects)}
+ * tells if the guess was close enough to use the plan that was made on it.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class Prediction {
+
+	public final AllObjects state = new AllObjects(); //the guessed game, only the planner reads it
+
+	private final LocalProjector projector;
+	private final double tolerance; //meters
+	//the locations of the last tick, by the slots of the ghosts of the game
+	private double[] lastLat = new double[16];
+	private double[] lastLon = new double[16];
+	private double[] lastAlt = new double[16];
+	private final BitSet known = new BitSet(); //the slots that have a last location
+	private Point3D lastPlayer;
+	//what was guessed, by the slots of the ghosts of the game
+	private double[] guessLat = new double[16];
+	private double[] guessLon = new double[16];
+	private final BitSet guessed = new BitSet();
+	private Point3D guessPlayer;
+	private int fruits, packmans, ghosts;
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	/**
+	 * @param projector The distances of the check.
+	 * @param tolerance How far (in meters) the player and the ghosts can be from the guess, and the guess still holds.
+	 */
+	public Prediction(LocalProjector projector, double tolerance) {
+		this.projector = projector;
+		this.tolerance = tolerance;
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method makes the state like the game.
+	 * @param game The game of this tick.
+	 * @param ahead True to move the player and the ghosts one step ahead (the guess of the next tick),
+	 * false for the game as it is.
+	 */
+	public void copy(AllObjects game, boolean ahead) {
+		state.boxes = game.boxes; //the boxes never change
+		copyFruits(game.fruits);
+		copyPackmans(game.packmans);
+
+		//the ghosts
+		guessed.clear();
+		for (int slot=state.ghosts.first(); slot>=0; slot=state.ghosts.next(slot))
+			if (game.ghosts.slot(state.ghosts.getId(slot)) == -1)
+				state.ghosts.removeId(state.ghosts.getId(slot));
+		for (int slot=game.ghosts.first(); slot>=0; slot=game.ghosts.next(slot)) {
+			double lat = game.ghosts.getLat(slot);
+			double lon = game.ghosts.getLon(slot);
+			double alt = game.ghosts.getAlt(slot);
+			if (ahead && known.get(slot)) {
+				lat += lat - lastLat[slot];
+				lon += lon - lastLon[slot];
+				alt += alt - lastAlt[slot];
+			}
+			if (slot >= guessLat.length) {
+				guessLat = Arrays.copyOf(guessLat, 2*slot);
+				guessLon = Arrays.copyOf(guessLon, 2*slot);
+			}
+			guessLat[slot] = lat;
+			guessLon[slot] = lon;
+			guessed.set(slot);
+			int id = game.ghosts.getId(slot);
+			int copy = state.ghosts.slot(id);
+			if (copy == -1) {
+				Ghost ghost = game.ghosts.get(slot);
+				state.ghosts.add(new Ghost(new Point3D(lat, lon, alt), id, ghost.getSpd_wt(), ghost.getRadius()));
+			}
+			else if (state.ghosts.getLat(copy) != lat || state.ghosts.getLon(copy) != lon || state.ghosts.getAlt(copy) != alt)
+				state.ghosts.setLocation(copy, new Point3D(lat, lon, alt));
+		}
+
+		//the player
+		guessPlayer = null;
+		if (game.player != null) {
+			Point3D location = game.player.getLocation();
+			if (ahead && lastPlayer != null)
+				location = new Point3D(2*location.x() - lastPlayer.x(), 2*location.y() - lastPlayer.y(), 2*location.z() - lastPlayer.z());
+			guessPlayer = location;
+			if (state.player == null || state.player.getId() != game.player.getId())
+				state.player = new Player(location, game.player.getId(), game.player.getSpd_wt(), game.player.getRadius());
+			else
+				state.player.setLocation(location);
+		}
+		fruits = game.fruits.size();
+		packmans = game.packmans.size();
+		ghosts = game.ghosts.size();
+	}
+
+	/**
+	 * This method keeps the locations of this tick, for the step of the next guess.
+	 * @param game The game of this tick.
+	 */
+	public void remember(AllObjects game) {
+		known.clear();
+		for (int slot=game.ghosts.first(); slot>=0; slot=game.ghosts.next(slot)) {
+			if (slot >= lastLat.length) {
+				lastLat = Arrays.copyOf(lastLat, 2*slot);
+				lastLon = Arrays.copyOf(lastLon, 2*slot);
+				lastAlt = Arrays.copyOf(lastAlt, 2*slot);
+			}
+			lastLat[slot] = game.ghosts.getLat(slot);
+			lastLon[slot] = game.ghosts.getLon(slot);
+			lastAlt[slot] = game.ghosts.getAlt(slot);
+			known.set(slot);
+		}
+		lastPlayer = game.player == null ? null : game.player.getLocation();
+	}
+
+	/**
+	 * This method checks the last guess against the game that really came.
+	 * @param game The game of the new tick.
+	 * @return True if nothing was eaten, and the player and every ghost are within the tolerance from the guess.
+	 */
+	public boolean holds(AllObjects game) {
+		if (game.fruits.size() != fruits || game.packmans.size() != packmans || game.ghosts.size() != ghosts)
+			return false;
+		if ((game.player == null) != (guessPlayer == null))
+			return false;
+		if (game.player != null && projector.distance2D(game.player.getLocation(), guessPlayer) > tolerance)
+			return false;
+		for (int slot=game.ghosts.first(); slot>=0; slot=game.ghosts.next(slot))
+			if (!guessed.get(slot) || projector.distance2D(game.ghosts.getLat(slot), game.ghosts.getLon(slot),
+					guessLat[slot], guessLon[slot]) > tolerance)
+				return false;
+		return true;
+	}
+
+	//the fruits do not move, only the eaten ones are removed and new ones are added
+	private void copyFruits(ObjectTable<Fruit> from) {
+		for (int slot=state.fruits.first(); slot>=0; slot=state.fruits.next(slot))
+			if (from.slot(state.fruits.getId(slot)) == -1)
+				state.fruits.removeId(state.fruits.getId(slot));
+		for (int slot=from.first(); slot>=0; slot=from.next(slot))
+			if (state.fruits.slot(from.getId(slot)) == -1) {
+				Fruit fruit = from.get(slot);
+				state.fruits.add(new Fruit(fruit.getLocation(), fruit.getId(), fruit.getSpd_wt()));
+			}
+	}
+
+	private void copyPackmans(ObjectTable<Packman> from) {
+		for (int slot=state.packmans.first(); slot>=0; slot=state.packmans.next(slot))
+			if (from.slot(state.packmans.getId(slot)) == -1)
+				state.packmans.removeId(state.packmans.getId(slot));
+		for (int slot=from.first(); slot>=0; slot=from.next(slot)) {
+			int copy = state.packmans.slot(from.getId(slot));
+			if (copy == -1) {
+				Packman packman = from.get(slot);
+				state.packmans.add(new Packman(packman.getLocation(), packman.getId(), packman.getSpd_wt(), packman.getRadius()));
+			}
+			else if (state.packmans.getLat(copy) != from.getLat(slot) || state.packmans.getLon(copy) != from.getLon(slot)
+					|| state.packmans.getAlt(copy) != from.getAlt(slot))
+				state.packmans.setLocation(copy, from.get(slot).getLocation());
+		}
+	}
+
+}
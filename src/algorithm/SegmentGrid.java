@@ -0,0 +1,259 @@
+package algorithm;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+import GeoObjects.Box;
+import gui.PanelBoard;
+import guiObjects.Intersection;
+import guiObjects.Pixel;
+import guiObjects.Segment;
+
+/**
+ * This class is a uniform grid over the board, that saves in every cell the frame segments of the boxes that pass in it.
+ * So checking if a segment cuts some box, is checking only the segments in the cells that the segment passes,
+ * and not all the frames of all the boxes.
+ * The grid is built once for the boxes and the size of the board (in pixels).
+ * The grid does not change after it was built, and every thread has his own query marks, so many threads can check together.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class SegmentGrid {
+
+	public static final int DEFAULT_CELL_SIZE = 32; //in pixels
+	private static final int MARGIN = 2; //the walk can miss a cell when it passes on the corner of cells, so the segments are added also to the cells nearby
+
+	private final int cellSize;
+	private final int columns;
+	private final int rows;
+	private final int[] x1; //the end points of the segments, x1[s],y1[s] - x2[s],y2[s]
+	private final int[] y1;
+	private final int[] x2;
+	private final int[] y2;
+	private final int[] cellStart; //the segments of cell c are cellSegments[cellStart[c]..cellStart[c+1]-1]
+	private final int[] cellSegments;
+
+	private final ThreadLocal<Query> query; //the marks of the segments that were tested, for every thread
+
+	//statistics
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder segmentTests = new LongAdder();
+	private volatile int lastSegmentTests = 0;
+
+////////////////////////***Constructors****///////////////////////////////////////////
+
+	public SegmentGrid(Collection<Box> boxes, PanelBoard board) {
+		this(frames(boxes, board), board.getWidth(), board.getHeight(), DEFAULT_CELL_SIZE);
+	}
+
+	public SegmentGrid(Segment[] segments, int width, int height, int cellSize) {
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+		this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+		x1 = new int[segments.length];
+		y1 = new int[segments.length];
+		x2 = new int[segments.length];
+		y2 = new int[segments.length];
+		for (int s=0; s<segments.length; s++) {
+			x1[s] = segments[s].getP1().x();
+			y1[s] = segments[s].getP1().y();
+			x2[s] = segments[s].getP2().x();
+			y2[s] = segments[s].getP2().y();
+		}
+		this.query = new ThreadLocal<Query>() {
+			@Override
+			protected Query initialValue() {
+				return new Query(x1.length);
+			}
+		};
+
+		//count the segments in every cell, then fill them (compressed rows)
+		cellStart = new int[columns*rows + 1];
+		for (int s=0; s<segments.length; s++)
+			forEachCell(s, null);
+		for (int c=0; c<columns*rows; c++)
+			cellStart[c+1] += cellStart[c];
+
+		cellSegments = new int[cellStart[columns*rows]];
+		int[] next = new int[columns*rows];
+		System.arraycopy(cellStart, 0, next, 0, next.length);
+		for (int s=0; s<segments.length; s++)
+			forEachCell(s, next);
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method checks if a segment between two pixels cuts one of the frames of the boxes.
+	 * Only the segments in the cells that the direct segment passes are tested.
+	 * @param source The source pixel.
+	 * @param target The target pixel.
+	 * @return True if some frame cuts the segment.
+	 */
+	public boolean cuts(Pixel source, Pixel target) {
+		return cuts(source.x(), source.y(), target.x(), target.y());
+	}
+
+	/**
+	 * This method checks if the segment (sx,sy)-(tx,ty) cuts one of the frames of the boxes, without creating objects.
+	 * Cutting is crossing the frame (see {@link Intersection#cross}): a segment that only touches a frame,
+	 * or goes along it, is free.
+	 * @return True if some frame cuts the segment.
+	 */
+	public boolean cuts(int sx, int sy, int tx, int ty) {
+		queries.increment();
+		if (x1.length == 0) {
+			lastSegmentTests = 0;
+			return false;
+		}
+		Query query = this.query.get();
+		query.start();
+		boolean cuts = walk(sx, sy, tx, ty, query);
+		lastSegmentTests = query.tests;
+		segmentTests.add(query.tests);
+		return cuts;
+	}
+
+	//the cells of the segment from source to target, until some frame cuts it
+	private boolean walk(int sx, int sy, int tx, int ty, Query query) {
+		//walk on the cells of the segment (Amanatides & Woo)
+		double dx = tx - sx;
+		double dy = ty - sy;
+		int stepX = dx > 0 ? 1 : -1;
+		int stepY = dy > 0 ? 1 : -1;
+		double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dx);
+		double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dy);
+		double maxX = dx == 0 ? Double.POSITIVE_INFINITY : ((Math.floorDiv(sx, cellSize) + (stepX > 0 ? 1 : 0)) * cellSize - sx) / dx;
+		double maxY = dy == 0 ? Double.POSITIVE_INFINITY : ((Math.floorDiv(sy, cellSize) + (stepY > 0 ? 1 : 0)) * cellSize - sy) / dy;
+		int cellX = Math.floorDiv(sx, cellSize);
+		int cellY = Math.floorDiv(sy, cellSize);
+		int steps = Math.abs(Math.floorDiv(tx, cellSize) - cellX) + Math.abs(Math.floorDiv(ty, cellSize) - cellY);
+
+		if (cutsInCell(clamp(cellX, columns), clamp(cellY, rows), sx, sy, tx, ty, query))
+			return true;
+		for (int i=0; i<steps; i++) {
+			if (maxX < maxY) {
+				cellX += stepX;
+				maxX += deltaX;
+			}
+			else {
+				cellY += stepY;
+				maxY += deltaY;
+			}
+			if (cutsInCell(clamp(cellX, columns), clamp(cellY, rows), sx, sy, tx, ty, query))
+				return true;
+		}
+		return cutsInCell(column(tx), row(ty), sx, sy, tx, ty, query); //already tested, unless rounding missed the last cell
+	}
+
+	//tests the segments of one cell, that was not tested yet in this query
+	private boolean cutsInCell(int column, int row, int sx, int sy, int tx, int ty, Query query) {
+		int cell = row*columns + column;
+		for (int i=cellStart[cell]; i<cellStart[cell+1]; i++) {
+			int s = cellSegments[i];
+			if (query.stamp[s] == query.number)
+				continue;
+			query.stamp[s] = query.number;
+			query.tests++;
+			if (Intersection.cross(x1[s], y1[s], x2[s], y2[s], sx, sy, tx, ty))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * This method adds the segment to all the cells of his bounding box (with margin).
+	 * @param index The index of the segment.
+	 * @param next If null, only count the segments in cellStart. Else the next free place of every cell.
+	 */
+	private void forEachCell(int index, int[] next) {
+		int fromColumn = column(Math.min(x1[index], x2[index]) - MARGIN);
+		int toColumn = column(Math.max(x1[index], x2[index]) + MARGIN);
+		int fromRow = row(Math.min(y1[index], y2[index]) - MARGIN);
+		int toRow = row(Math.max(y1[index], y2[index]) + MARGIN);
+		for (int row=fromRow; row<=toRow; row++)
+			for (int column=fromColumn; column<=toColumn; column++) {
+				int cell = row*columns + column;
+				if (next == null)
+					cellStart[cell+1]++;
+				else
+					cellSegments[next[cell]++] = index;
+			}
+	}
+
+	//pixels out of the board are in the cells on the border
+	private int column(int x) {
+		return clamp(Math.floorDiv(x, cellSize), columns);
+	}
+
+	private int row(int y) {
+		return clamp(Math.floorDiv(y, cellSize), rows);
+	}
+
+	private static int clamp(int cell, int cells) {
+		return Math.max(0, Math.min(cells-1, cell));
+	}
+
+	//the frames of all the boxes
+	private static Segment[] frames(Collection<Box> boxes, PanelBoard board) {
+		Segment[] segments = new Segment[boxes.size()*4];
+		int k = 0;
+		for (Box box: boxes)
+			for (Segment segment: box.getFrame(board))
+				segments[k++] = segment;
+		return segments;
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public long getQueries() {
+		return queries.sum();
+	}
+
+	public long getSegmentTests() {
+		return segmentTests.sum();
+	}
+
+	// how many segments were tested in the last query
+	public int getLastSegmentTests() {
+		return lastSegmentTests;
+	}
+
+	public double getAverageSegmentTests() {
+		long queries = getQueries();
+		return queries == 0 ? 0 : (double)getSegmentTests() / queries;
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentGrid [segments:" + x1.length + ", cells:" + columns + "x" + rows
+				+ ", queries:" + getQueries() + ", tests per query:" + getAverageSegmentTests() + "]";
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * The marks of one thread: stamp[s] == number iff segment s was already tested in this query.
+	 */
+	private static class Query {
+
+		final int[] stamp;
+		int number = 0;
+		int tests = 0;
+
+		Query(int segments) {
+			stamp = new int[segments];
+		}
+
+		//starts a new query, all the marks of the last one are not valid
+		void start() {
+			tests = 0;
+			if (++number == 0) { //overflow, all the stamps are not valid
+				Arrays.fill(stamp, 0);
+				number = 1;
+			}
+		}
+	}
+}
@@ -1,25 +1,24 @@
 package algorithm;
 
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import GeoObjects.AllObjects;
 import GeoObjects.Box;
 import GeoObjects.Fruit;
-import GeoObjects.GenericGeoObject;
-import GeoObjects.Ghost;
 import GeoObjects.Packman;
 import GeoObjects.Point3D;
 import gui.PanelBoard;
-import guiObjects.Line;
 import guiObjects.Map;
-import guiObjects.Path;
-import guiObjects.PathComperator;
 import guiObjects.Pixel;
+import guiObjects.PixelBuffer;
 import guiObjects.Segment;
 /**
  * This class is the algorithm and allows the automatic game.
- * We have modeled the problem into an unintended graph, this algorithm based on BFS algorithm, using priority queue.
+ * We have modeled the problem into an unintended graph, this algorithm based on Dijkstra algorithm, using priority queue.
  * So that the corners of the boxes are the nodes of the graph. Thus we knew to tell the player where he could go, 
  * so that for every available lane there was an arch between those nodes.
  * 
@@ -37,12 +36,25 @@ import guiObjects.Segment;
  * @author Yoav and Elad.
  *
  */
-public class Shortest {
+public class Shortest implements Planner {
+
+	public static final GraphCache graphCache = new GraphCache(); //the graph of the last scenario
+	private static final int INDEX_CELL = 64; //the cell size of the indexes of the objects, in pixels
+	private static final AtomicInteger buildGeneration = new AtomicInteger(); //changed when the builds are cancelled
 
 	AllObjects game;
 	PanelBoard board;
-	public boolean[][] matrixCorners; // represent the graph 
+	public BitSet[] matrixCorners; // represent the graph, bit j of matrixCorners[i] is set iff exist free path between (corners[i],corners[j])
 	public Pixel[] corners;
+	private PathEngine engine; //the search on the graph
+	private SegmentGrid grid; //the frames of the boxes, for free path checking
+	private final PixelBuffer fruitPixels = new PixelBuffer(); //the pixels of the objects, converted once in every refresh
+	private final PixelBuffer packmanPixels = new PixelBuffer();
+	private final PixelBuffer ghostPixels = new PixelBuffer();
+	private final SpatialIndex fruitIndex = new SpatialIndex(INDEX_CELL); //the same pixels, by their place, items are the slots
+	private final SpatialIndex packmanIndex = new SpatialIndex(INDEX_CELL);
+	private final SpatialIndex ghostIndex = new SpatialIndex(INDEX_CELL);
+	private final Visible visible = new Visible();
 
 	private Point3D centeralPoint; //for init location
 	int maxCloseObjects = 0; //how many objects nearby the most centeral object
@@ -51,11 +63,28 @@ public class Shortest {
 ////////////////////////***Constructor****///////////////////////////////////////////
 
 
+	/**
+	 * @throws CancellationException if {@link #cancelBuilds()} was called while the graph was built.
+	 */
 	public Shortest(AllObjects game, PanelBoard board) {
+		int generation = buildGeneration.get();
 		refresh(game, board);
-		corners = new Pixel[game.boxes.size()*4+1];
-		matrixCorners = new boolean[game.boxes.size()*4+1][game.boxes.size()*4+1];
-		buildGraph();
+		GraphCache.Key key = new GraphCache.Key(game.boxes, board.getWidth(), board.getHeight());
+		GraphCache.Entry cached = graphCache.get(key);
+		if (cached == null) {
+			grid = new SegmentGrid(game.boxes, board);
+			corners = new Pixel[game.boxes.size()*4+1];
+			matrixCorners = new BitSet[game.boxes.size()*4+1];
+			buildGraph(generation);
+			cached = graphCache.put(key, corners, matrixCorners, grid);
+		}
+
+		//the graph is shared with the cache, only the source (index 0) belongs to this object
+		corners = cached.corners.clone();
+		matrixCorners = cached.matrixCorners.clone();
+		grid = cached.grid;
+		matrixCorners[0] = new BitSet(matrixCorners.length);
+		engine = new PathEngine(corners.length);
 	}
 
 
@@ -65,9 +94,20 @@ public class Shortest {
 
 	
 	/**
-	 * This function initializes the representative matrix of the graph
+	 * This method cancels all the graphs that are built now, for example when a new game was opened.
+	 * Their constructors throw {@link CancellationException}, and nothing is saved in the cache.
 	 */
-	private void buildGraph() {
+	public static void cancelBuilds() {
+		buildGeneration.incrementAndGet();
+	}
+
+	/**
+	 * This function initializes the representative matrix of the graph.
+	 * The path between two corners is the same path in both directions, so only the upper triangle is computed
+	 * (the rows in parallel, every task writes only his rows) and then it is mirrored.
+	 * @param generation The builds generation when the build started, if it changes the build is cancelled.
+	 */
+	private void buildGraph(int generation) {
 
 		//Init the corners array
 
@@ -80,12 +120,16 @@ public class Shortest {
 			}
 		}
 
-		//Init graph of the corners as matrix.
-		//matrix[i][j] true iff exist free path between (corners[i],corners[j])
+		//Init graph of the corners as bits rows.
+		//bit j of matrixCorners[i] is set iff exist free path between (corners[i],corners[j])
+
+		for (int i=1; i<matrixCorners.length; i++)
+			matrixCorners[i] = new BitSet(matrixCorners.length);
+		ForkJoinPool.commonPool().invoke(new RowsTask(generation, 1, matrixCorners.length));
 
 		for (int i=1; i<matrixCorners.length; i++)
-			for (int j=1; j<matrixCorners.length; j++)
-				matrixCorners[i][j] = freeCornersPath(i, j);
+			for (int j=matrixCorners[i].nextSetBit(i+1); j >= 0; j=matrixCorners[i].nextSetBit(j+1))
+				matrixCorners[j].set(i);
 	}
 
 	/**
@@ -93,60 +137,67 @@ public class Shortest {
 	 * @param source the location of the player.
 	 * @return The calculation of the algorithm.
 	 */
+	@Override
 	public Pixel findPath(Pixel source) {
-		initSource(source);
-
 		//run away from nearby ghosts
 		Pixel runAwayFromGhost = runAway(source);
 		if (runAwayFromGhost!=null)
 			return runAwayFromGhost;
 
 		//find next pixel target
-		Pixel algoFound = findPathAlgorithm(source);
+		Pixel algoFound = nextTarget(source);
 		if (algoFound == null)
 			return null;
 		
-		//run away from far ghost in the way		Segment segment = new Segment(new Line(source, algoFound), source, algoFound);
-		Segment segment = new Segment(source, algoFound);
-
-		for (Ghost ghost: game.ghosts) {
-			Pixel ghostPixel = board.map.gps2pixel(ghost.getLocation(),  board.getWidth(), board.getHeight());
-			if (source.distance(ghostPixel) < 200 && segment.onSegment(ghostPixel)) {
-				int deltaY = (ghostPixel.y() - source.y());
-				int deltaX = ghostPixel.x() - source.x();
-				return gotoTheSide(source, deltaX, deltaY);
+		//run away from far ghost in the way (the closest one on the segment)
+		final Segment segment = new Segment(source, algoFound);
+		int ghost = ghostIndex.nearest(source.x(), source.y(), 200, new SpatialIndex.Filter() {
+			@Override
+			public boolean accept(int item, int x, int y) {
+				return segment.onSegment(new Pixel(x, y));
 			}
+		});
+		if (ghost != -1) {
+			int deltaY = ghostIndex.getY(ghost) - source.y();
+			int deltaX = ghostIndex.getX(ghost) - source.x();
+			return gotoTheSide(source, deltaX, deltaY);
 		}
 		return algoFound;
 	}
 
-	
+	/**
+	 * This method chooses where to go now, when there is no ghost nearby.
+	 * Here it is the closest fruit (by the graph), other algorithms can choose other target.
+	 * @param source The location of the player.
+	 * @return The pixel to go, or null if there is nothing to go to.
+	 */
+	protected Pixel nextTarget(Pixel source) {
+		initSource(source);
+		return findPathAlgorithm(source);
+	}
+
 	/**
 	 * This method make the search fo the ideal path to the player.
-	 * This algorithm based on BFS algorithm, using priority queue.
+	 * This algorithm is Dijkstra on the corners graph: the first corner polled that has a direct path to some fruit
+	 * is the closest one, so the player goes to the next corner on the path to him.
+	 * (There is no A* heuristic here, the goal is any corner that see a fruit, so we can't estimate the distance to it).
 	 * @param source The source pixel 
 	 * @return The Ideal pixel to go according to the algorithm
 	 */
 	public Pixel findPathAlgorithm(Pixel source) {
-
-		PriorityQueue<Path> queue = new PriorityQueue<>(new PathComperator(corners)); //priority queue, poll the shortest path
-		queue.add(new Path(0)); //add the source to queue
-
-		while (!queue.isEmpty()) {
-			Path shortPath = queue.poll(); //poll the shortest path
-			Pixel closestDirectFruit = closestFruitAndPackman(corners[shortPath.getTail()]); //if exist direct path to fruits - go to the closest
-			if (closestDirectFruit != null) { //found fruit from the end of the path
-				if (shortPath.size() >= 2) {
-					return corners[shortPath.get(1)]; //go to the next corner
-				}
-				return closestDirectFruit; //go to the closest fruit 
+		Pixel closestDirectFruit = closestFruitAndPackman(source); //if exist direct path to fruits - go to the closest
+		if (closestDirectFruit != null)
+			return closestDirectFruit;
+
+		int found = engine.search(0, corners, matrixCorners, new PathEngine.Goal() {
+			@Override
+			public boolean reached(int node) {
+				return closestFruitAndPackman(corners[node]) != null; //found fruit from this corner
 			}
-			else
-				for (int i=1; i<matrixCorners.length; i++)
-					if (matrixCorners[shortPath.getTail()][i] && !shortPath.contains(i)) //exist direct path to other corner && this corner not close a circle on the path
-						queue.add(new Path(shortPath, i));
-		}
-		return null; //not found any fruit or other corner
+		}, null);
+		if (found == -1)
+			return null; //not found any fruit or other corner
+		return corners[engine.firstStep(found)]; //go to the next corner
 	}
 	
 /**
@@ -155,26 +206,30 @@ public class Shortest {
  */
 	public void initSource(Pixel source) {
 		corners[0] = source;
-		for (int i=1; i<corners.length; i++) {
-			boolean free = freePath(source, corners[i]); // True - free path, False - no free path.
-			matrixCorners[0][i] = free;
-			matrixCorners[i][0] = free;
-		}
+		matrixCorners[0].clear();
+		for (int i=1; i<corners.length; i++)
+			if (corners[i].equals(source)) { //the source is on a corner, it has the arches of the corner (without the corner itself)
+				matrixCorners[0].or(matrixCorners[i]);
+				return;
+			}
+		for (int i=1; i<corners.length; i++) //only the row of the source, no path goes back to the source
+			if (freePath(source, corners[i])) // True - free path, False - no free path.
+				matrixCorners[0].set(i);
 	}
 
 
 	/**
 	 * This method checks if those to corners are on the same box, and knows to tell if they Nearby corners or Opposite corners.
+	 * Nearby corners are checked like other corners, because other box can cross the side between them.
 	 * @param c1 The first corner 
 	 * @param c2 The second corner
 	 * @return True for a free path else False.
 	 */
 	private boolean freeCornersPath(int c1, int c2) {
 		//check if the corners belong to the same box
-		if (boxNumber(c1) == boxNumber(c2)) {
-			return Math.abs((c1-c2))%2 == 1; //Nearby corners - return true, Opposite corners - return false
-		}
-		else return freePath(corners[c1], corners[c2]);					
+		if (boxNumber(c1) == boxNumber(c2) && Math.abs((c1-c2))%2 == 0)
+			return false; //Opposite corners - the path goes inside the box
+		return freePath(corners[c1], corners[c2]); //the side of the box is not cutting, only touching
 	}
 
 	//return the number of the box in the matrix, by thw corner number
@@ -187,19 +242,10 @@ public class Shortest {
 	 * @param target The target pixel
 	 * @return True if there is a free path. False if there is not!
 	 */
-	private boolean freePath(Pixel source, Pixel target) {
+	protected boolean freePath(Pixel source, Pixel target) {
 		if (source.equals(target))
 			return true;
-		Segment directSegmant = new Segment(new Line(source,target), source, target);
-		for (Box box: game.boxes) {
-			Segment[] frame = box.getFrame(board);
-			for (int i=0; i<frame.length; i++) { //the segments on the box's frame
-				Pixel cutting = frame[i].cuttingPoint(directSegmant); //calculate the cutting point between direct line and the frame of the box
-				if (cutting != null && cutting.x() != Integer.MAX_VALUE && cutting.y() != Integer.MAX_VALUE) //the lines are cutting
-					return false;
-			}
-		}
-		return true;
+		return !grid.cuts(source.x(), source.y(), target.x(), target.y()); //checks only the frames near the direct segment, without new objects
 	}
 	
 	/**
@@ -208,40 +254,53 @@ public class Shortest {
 	 * @return The Pixel that is the closet to the source.
 	 */
 	private Pixel closestFruitAndPackman(Pixel source) {
-		Pixel closestPixel = null; 
-		double minDistance = Double.MAX_VALUE;
-
-		//find closest packman
-		for (Packman packman: game.packmans) {
-			Pixel packmanPixel = board.map.gps2pixel(packman.getLocation(),  board.getWidth(), board.getHeight());
-			if (freePath(source, packmanPixel)) {
-				if (source.distance(packmanPixel)/0.5 < minDistance) { //get priority of 2 to the packmans
-					minDistance = source.distance(packmanPixel);
-					closestPixel = packmanPixel;
-				}
-			}
-		}
+		visible.source = source;
+		int packman = packmanIndex.nearest(source.x(), source.y(), Double.MAX_VALUE, visible);
+		double packmanDistance = packman == -1 ? Double.MAX_VALUE : distance(source, packmanIndex.getX(packman), packmanIndex.getY(packman));
+
+		//a fruit only if he is closer than the packman
+		int fruit = fruitIndex.nearest(source.x(), source.y(), packmanDistance, visible);
+		if (fruit != -1)
+			return new Pixel(fruitIndex.getX(fruit), fruitIndex.getY(fruit));
+		if (packman != -1)
+			return new Pixel(packmanIndex.getX(packman), packmanIndex.getY(packman));
+		return null;
+	}
 
-		//find closest fruit
-		for (Fruit fruit: game.fruits) {
-			Pixel fruitPixel = board.map.gps2pixel(fruit.getLocation(),  board.getWidth(), board.getHeight());
-			if (freePath(source, fruitPixel)) {
-				if (source.distance(fruitPixel) < minDistance) {
-					minDistance = source.distance(fruitPixel);
-					closestPixel = fruitPixel;
-				}
-			}
-		}
-		return closestPixel;
+	//freePath to the pixel (x,y), without new objects
+	private boolean freePath(Pixel source, int x, int y) {
+		if (source.x() == x && source.y() == y)
+			return true;
+		return !grid.cuts(source.x(), source.y(), x, y);
+	}
+
+	//the distance between the pixels, like Pixel.distance
+	private static double distance(Pixel source, int x, int y) {
+		int dx = x - source.x();
+		int dy = y - source.y();
+		return Math.sqrt(dx*dx+dy*dy);
+	}
+
+	// the frames grid, with the statistics of the free path checks.
+	public SegmentGrid getSegmentGrid() {
+		return grid;
 	}
+
 	/**
 	 * This method refresh the board!
 	 * @param game new updated game 
 	 * @param board new updated board
 	 */
+	@Override
 	public void refresh(AllObjects game, PanelBoard board) {
 		this.game = game;
 		this.board = board;
+		fruitPixels.project(game.fruits, board.map, board.getWidth(), board.getHeight());
+		packmanPixels.project(game.packmans, board.map, board.getWidth(), board.getHeight());
+		ghostPixels.project(game.ghosts, board.map, board.getWidth(), board.getHeight());
+		fruitIndex.update(game.fruits, fruitPixels); //only the objects that moved to other cell change the index
+		packmanIndex.update(game.packmans, packmanPixels);
+		ghostIndex.update(game.ghosts, ghostPixels);
 	}
 
 	/**
@@ -250,7 +309,7 @@ public class Shortest {
 	 * @return Where the should go
 	 */
 	public Pixel runAway(Pixel source) {
-		if (game.ghosts.isEmpty()) //no ghosts in this game
+		if (ghostIndex.size() == 0) //no ghosts in this game
 			return null;
 
 		Pixel closestGhost = closestGhost(source);
@@ -292,71 +351,152 @@ public class Shortest {
 	 * @return  Where the closest ghost is.
 	 */
 	private Pixel closestGhost(Pixel source) {
-		Pixel closestPixel = null; 
-		double minDistance = Double.MAX_VALUE;
-		//find mun distance, for all ghosts in the game
-		for (Ghost ghost: game.ghosts) {
-			Pixel ghostPixel = board.map.gps2pixel(ghost.getLocation(),  board.getWidth(), board.getHeight());
-			if (source.distance(ghostPixel) < minDistance) {
-				minDistance = source.distance(ghostPixel);
-				closestPixel = ghostPixel;
-			}
-		}
-		return closestPixel;
+		int closest = ghostIndex.nearest(source.x(), source.y(), Double.MAX_VALUE, null);
+		return closest == -1 ? null : new Pixel(ghostIndex.getX(closest), ghostIndex.getY(closest));
 	}
 
 	
 	/**
 	 * This method find first location for the player.
+	 * The objects are projected to pixels once and saved in a {@link PointGrid}, so counting the close objects
+	 * checks only the objects nearby. The objects are counted in parallel, and the first object with the
+	 * biggest count wins, so the result is the same in every run.
 	 * @param radius The radius we want.
 	 * @return The ideal point for the player.
 	 */
 	public Point3D mostCenteral(double radius) {
-		maxCloseObjects = 0;
-		centeralPoint = null;
+		int size = game.fruits.size() + game.packmans.size();
+		Point3D[] locations = new Point3D[size];
+		int k = 0;
 		for (Fruit fruit: game.fruits)
-			calculateCloseObject(fruit, radius);
-
+			locations[k++] = fruit.getLocation();
 		for (Packman packman: game.packmans)
-			calculateCloseObject(packman, radius);
+			locations[k++] = packman.getLocation();
 
+		PixelBuffer buffer = new PixelBuffer(); //all the objects converted in one loop
+		for (Point3D location: locations)
+			buffer.add(location);
+		buffer.project(board.map, board.getWidth(), board.getHeight());
+		Pixel[] pixels = new Pixel[size];
+		for (int i=0; i<size; i++)
+			pixels[i] = buffer.getPixel(i);
+
+		PointGrid objects = new PointGrid(pixels, Math.max(1, (int)Math.ceil(radius)));
+		int[] counters = new int[size];
+		ForkJoinPool.commonPool().invoke(new CountTask(objects, radius, counters, 0, size));
+
+		maxCloseObjects = 0;
+		centeralPoint = null;
+		for (int i=0; i<size; i++)
+			if (counters[i] > maxCloseObjects) {
+				maxCloseObjects = counters[i];
+				centeralPoint = locations[i];
+			}
 		return centeralPoint;
 	}
 
 	/**
-	 * This method calculate the object that have the most close objects. 
-	 * @param object The object we check.
-	 * @param radius The radius we what to compute with.
-	 */
-	private void calculateCloseObject(GenericGeoObject object, double radius) {
-		int counter = countCloseObjects(object.getLocation(), radius);
-		if (counter > maxCloseObjects) {
-			maxCloseObjects = counter;
-			centeralPoint = object.getLocation(); 
-		}
-	}
-	/**
-	 * This method is a help method to the one above, and count the object that close to some object. 
-	 * @param location Where to look for.
+	 * This method is a help method to the one above, and count the object that close to some object.
+	 * @param objects The pixels of all the objects.
+	 * @param index The object we check.
 	 * @param radius The radius that we want to compute with.
+	 * @param near Place for the indexes of the objects nearby.
 	 * @return The sum of the object.
 	 */
-	private int countCloseObjects(Point3D location, double radius) {
-		Pixel source = board.map.gps2pixel(location, board.getWidth(), board.getHeight());
+	private int countCloseObjects(PointGrid objects, int index, double radius, int[] near) {
+		Pixel source = objects.getPoint(index);
+		int found = objects.near(source, radius, near);
 		int counter = 0;
-		for (Packman packman: game.packmans) {
-			Pixel target = board.map.gps2pixel(packman.getLocation(), board.getWidth(), board.getHeight());
-			if (source.distance(target) < radius && freePath(source, target))
+		for (int i=0; i<found; i++)
+			if (freePath(source, objects.getPoint(near[i])))
 				counter++;
+		return counter;
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * Computes the rows from..to-1 of the graph, only the bits after the diagonal.
+	 * The rows are split to single rows, because the first rows are longer.
+	 */
+	private class RowsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int generation;
+		private final int from;
+		private final int to;
+
+		RowsTask(int generation, int from, int to) {
+			this.generation = generation;
+			this.from = from;
+			this.to = to;
 		}
 
-		for (Fruit fruit: game.fruits) {
-			Pixel target = board.map.gps2pixel(fruit.getLocation(), board.getWidth(), board.getHeight());
-			if (source.distance(target) < radius && freePath(source, target))
-				counter++;
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				for (int i=from; i<to; i++) {
+					if (buildGeneration.get() != generation)
+						throw new CancellationException("The build of the graph was cancelled");
+					for (int j=i+1; j<matrixCorners.length; j++)
+						if (freeCornersPath(i, j))
+							matrixCorners[i].set(j);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RowsTask(generation, from, middle), new RowsTask(generation, middle, to));
 		}
+	}
 
-		return counter;
+	/**
+	 * Counts the close objects of the objects from..to-1, splits the range if it is too big.
+	 */
+	private class CountTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private static final int THRESHOLD = 32; //objects that counted in one task
+
+		private final PointGrid objects;
+		private final double radius;
+		private final int[] counters;
+		private final int from;
+		private final int to;
+
+		CountTask(PointGrid objects, double radius, int[] counters, int from, int to) {
+			this.objects = objects;
+			this.radius = radius;
+			this.counters = counters;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				int[] near = new int[objects.size()];
+				for (int i=from; i<to; i++)
+					counters[i] = countCloseObjects(objects, i, radius, near);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new CountTask(objects, radius, counters, from, middle),
+					new CountTask(objects, radius, counters, middle, to));
+		}
+	}
+
+	/**
+	 * The filter of the indexes: there is a free path from the source to the object.
+	 */
+	private class Visible implements SpatialIndex.Filter {
+
+		Pixel source;
+
+		@Override
+		public boolean accept(int item, int x, int y) {
+			return freePath(source, x, y);
+		}
 	}
 
 }
@@ -0,0 +1,305 @@
+package algorithm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import GeoObjects.GenericGeoObject;
+import GeoObjects.ObjectTable;
+import guiObjects.PixelBuffer;
+
+/**
+ * This class is an index of moving objects by their pixels, for finding the closest objects to some pixel.
+ * The pixels are in a hash grid: every cell of cellSize pixels has a list of his objects, and the lists are
+ * in a hash table of the cells. So moving an object inside his cell only changes his pixel,
+ * and moving him to other cell only moves him between two lists.
+ *
+ * The objects are numbered by int items (the slots of the {@link ObjectTable}).
+ * A query checks the cells around the pixel, ring after ring, and stops when the next ring is farther than
+ * what was found. The queries can get a {@link Filter}, for example "there is a free path to the object",
+ * that is checked only for the objects that are closer than what was found.
+ * The queries use arrays of the index, so only one thread can use an index.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class SpatialIndex {
+
+	private final int cellSize;
+	private int[] head = new int[64]; //the first item in every bucket of the hash table, -1 if empty
+	private int[] x = new int[16]; //the pixel of every item
+	private int[] y = new int[16];
+	private int[] cellX = new int[16]; //the cell of every item
+	private int[] cellY = new int[16];
+	private int[] next = new int[16]; //the next item in the same bucket
+	private int[] previous = new int[16];
+	private final BitSet present = new BitSet();
+	private final BitSet seen = new BitSet(); //for update
+	//the query of nearest, in fields so the cells are scanned without new objects (one thread uses the index)
+	private int queryX, queryY, queryK, found;
+	private double queryMax;
+	private Filter queryFilter;
+	private int[] queryResult;
+	private double[] distances = new double[1]; //the distances of the items in queryResult
+	private final int[] closest = new int[1];
+	private int size = 0;
+	private int minCellX, maxCellX, minCellY, maxCellY; //all the cells that were used since clear
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public SpatialIndex(int cellSize) {
+		this.cellSize = cellSize;
+		clear();
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method puts the item in the pixel, or moves him there if he is already in the index.
+	 */
+	public void put(int item, int px, int py) {
+		int cx = Math.floorDiv(px, cellSize);
+		int cy = Math.floorDiv(py, cellSize);
+		if (present.get(item)) {
+			x[item] = px;
+			y[item] = py;
+			if (cellX[item] == cx && cellY[item] == cy) //the same cell, only the pixel changed
+				return;
+			unlink(item);
+		}
+		else {
+			ensureCapacity(item+1);
+			if (size == head.length) //keep the lists short
+				rehash(head.length*2);
+			present.set(item);
+			size++;
+			x[item] = px;
+			y[item] = py;
+		}
+		cellX[item] = cx;
+		cellY[item] = cy;
+		link(item);
+		minCellX = Math.min(minCellX, cx);
+		maxCellX = Math.max(maxCellX, cx);
+		minCellY = Math.min(minCellY, cy);
+		maxCellY = Math.max(maxCellY, cy);
+	}
+
+	public void remove(int item) {
+		if (!present.get(item))
+			return;
+		unlink(item);
+		present.clear(item);
+		size--;
+	}
+
+	// removes all the items.
+	public void clear() {
+		Arrays.fill(head, -1);
+		present.clear();
+		size = 0;
+		minCellX = minCellY = Integer.MAX_VALUE;
+		maxCellX = maxCellY = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * This method makes the index like the table: every object in his pixel, and no removed objects.
+	 * The objects that did not move cost only a compare.
+	 * @param table The objects, the items are their slots.
+	 * @param pixels The pixels of the table, in the order of the slots (see {@link PixelBuffer#project(ObjectTable, guiObjects.Map, int, int)}).
+	 */
+	public void update(ObjectTable<? extends GenericGeoObject> table, PixelBuffer pixels) {
+		seen.clear();
+		int i = 0;
+		for (int slot=table.first(); slot>=0 && i<pixels.size(); slot=table.next(slot), i++) {
+			put(slot, pixels.x[i], pixels.y[i]);
+			seen.set(slot);
+		}
+		for (int item=present.nextSetBit(0); item>=0; item=present.nextSetBit(item+1))
+			if (!seen.get(item))
+				remove(item);
+	}
+
+	/**
+	 * This method finds the closest item to the pixel.
+	 * @param maxDistance Only items that are closer than this distance.
+	 * @param filter Only items that the filter accepts, null for all the items.
+	 * @return The closest item, or -1 if there is no such item.
+	 */
+	public int nearest(int px, int py, double maxDistance, Filter filter) {
+		return nearest(px, py, 1, maxDistance, filter, closest) == 0 ? -1 : closest[0];
+	}
+
+	/**
+	 * This method finds the k closest items to the pixel, sorted by the distance.
+	 * @param k How many items.
+	 * @param maxDistance Only items that are closer than this distance.
+	 * @param filter Only items that the filter accepts, null for all the items.
+	 * @param result The items found are written here (must have place for k items).
+	 * @return How many items found (less than k if there are not enough items).
+	 */
+	public int nearest(int px, int py, int k, double maxDistance, Filter filter, int[] result) {
+		if (size == 0 || k <= 0)
+			return 0;
+		if (distances.length < k)
+			distances = new double[k];
+		queryX = px;
+		queryY = py;
+		queryK = k;
+		queryMax = maxDistance;
+		queryFilter = filter;
+		queryResult = result;
+		found = 0;
+
+		int cx = Math.floorDiv(px, cellSize);
+		int cy = Math.floorDiv(py, cellSize);
+		int lastRing = Math.max(Math.max(cx - minCellX, maxCellX - cx), Math.max(cy - minCellY, maxCellY - cy));
+		for (int ring=0; ring<=lastRing; ring++) {
+			//the items in this ring are at least (ring-1)*cellSize far, stop if the items found are closer
+			double ringDistance = (ring-1) * (double)cellSize;
+			if (ringDistance >= maxDistance || (found == k && ringDistance >= distances[k-1]))
+				break;
+			//only the cells of the ring that are in the used cells
+			int fromX = Math.max(cx - ring, minCellX);
+			int toX = Math.min(cx + ring, maxCellX);
+			int fromY = Math.max(cy - ring + 1, minCellY);
+			int toY = Math.min(cy + ring - 1, maxCellY);
+			if (cy - ring >= minCellY)
+				for (int columnX=fromX; columnX<=toX; columnX++)
+					scan(columnX, cy - ring);
+			if (ring > 0 && cy + ring <= maxCellY)
+				for (int columnX=fromX; columnX<=toX; columnX++)
+					scan(columnX, cy + ring);
+			if (cx - ring >= minCellX)
+				for (int rowY=fromY; rowY<=toY; rowY++)
+					scan(cx - ring, rowY);
+			if (ring > 0 && cx + ring <= maxCellX)
+				for (int rowY=fromY; rowY<=toY; rowY++)
+					scan(cx + ring, rowY);
+		}
+		queryFilter = null;
+		queryResult = null;
+		return found;
+	}
+
+	//checks the items of the cell for the query of nearest, and inserts them to the sorted result
+	private void scan(int columnX, int rowY) {
+		for (int item=head[bucket(columnX, rowY)]; item!=-1; item=next[item]) {
+			if (cellX[item] != columnX || cellY[item] != rowY)
+				continue; //other cell in the same bucket
+			double distance = distance(queryX, queryY, item);
+			if (distance >= queryMax || (found == queryK && distance >= distances[queryK-1]))
+				continue;
+			if (queryFilter != null && !queryFilter.accept(item, x[item], y[item]))
+				continue;
+			int place = found < queryK ? found++ : queryK-1;
+			while (place > 0 && distances[place-1] > distance) {
+				distances[place] = distances[place-1];
+				queryResult[place] = queryResult[place-1];
+				place--;
+			}
+			distances[place] = distance;
+			queryResult[place] = item;
+		}
+	}
+
+	/**
+	 * This method finds all the items that their distance from the pixel is less than the radius.
+	 * @param filter Only items that the filter accepts, null for all the items.
+	 * @param result The items found are written here (must have place for all the items).
+	 * @return How many items found.
+	 */
+	public int within(int px, int py, double radius, Filter filter, int[] result) {
+		if (size == 0)
+			return 0;
+		int fromX = Math.max(minCellX, Math.floorDiv((int)Math.floor(px - radius), cellSize));
+		int toX = Math.min(maxCellX, Math.floorDiv((int)Math.ceil(px + radius), cellSize));
+		int fromY = Math.max(minCellY, Math.floorDiv((int)Math.floor(py - radius), cellSize));
+		int toY = Math.min(maxCellY, Math.floorDiv((int)Math.ceil(py + radius), cellSize));
+
+		int found = 0;
+		for (int rowY=fromY; rowY<=toY; rowY++)
+			for (int columnX=fromX; columnX<=toX; columnX++)
+				for (int item=head[bucket(columnX, rowY)]; item!=-1; item=next[item])
+					if (cellX[item] == columnX && cellY[item] == rowY && distance(px, py, item) < radius
+							&& (filter == null || filter.accept(item, x[item], y[item])))
+						result[found++] = item;
+		return found;
+	}
+
+	private double distance(int px, int py, int item) {
+		int dx = x[item] - px;
+		int dy = y[item] - py;
+		return Math.sqrt((double)dx*dx + (double)dy*dy);
+	}
+
+	private int bucket(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & (head.length-1);
+	}
+
+	private void link(int item) {
+		int bucket = bucket(cellX[item], cellY[item]);
+		next[item] = head[bucket];
+		previous[item] = -1;
+		if (head[bucket] != -1)
+			previous[head[bucket]] = item;
+		head[bucket] = item;
+	}
+
+	private void unlink(int item) {
+		if (previous[item] != -1)
+			next[previous[item]] = next[item];
+		else
+			head[bucket(cellX[item], cellY[item])] = next[item];
+		if (next[item] != -1)
+			previous[next[item]] = previous[item];
+	}
+
+	private void rehash(int buckets) {
+		head = new int[buckets];
+		Arrays.fill(head, -1);
+		for (int item=present.nextSetBit(0); item>=0; item=present.nextSetBit(item+1))
+			link(item);
+	}
+
+	private void ensureCapacity(int items) {
+		if (items <= x.length)
+			return;
+		int length = Math.max(items, x.length*2);
+		x = Arrays.copyOf(x, length);
+		y = Arrays.copyOf(y, length);
+		cellX = Arrays.copyOf(cellX, length);
+		cellY = Arrays.copyOf(cellY, length);
+		next = Arrays.copyOf(next, length);
+		previous = Arrays.copyOf(previous, length);
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public int getX(int item) {
+		return x[item];
+	}
+
+	public int getY(int item) {
+		return y[item];
+	}
+
+	public boolean contains(int item) {
+		return present.get(item);
+	}
+
+	public int size() {
+		return size;
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * A condition on the items of a query.
+	 */
+	public interface Filter {
+
+		// true if the item at pixel (x,y) can be in the result.
+		boolean accept(int item, int x, int y);
+	}
+
+}
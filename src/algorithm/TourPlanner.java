@@ -0,0 +1,398 @@
+package algorithm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import GeoObjects.AllObjects;
+import GeoObjects.Fruit;
+import GeoObjects.GenericGeoObject;
+import GeoObjects.ObjectTable;
+import GeoObjects.Packman;
+import GeoObjects.Point3D;
+import gui.PanelBoard;
+import guiObjects.Pixel;
+
+/**
+ * This class is the tour planning mode of the algorithm.
+ * Instead of going every tick to the closest fruit, the player plans once the order of visiting all the fruits and packmans.
+ *
+ * At the scenario load:
+ * The fruits and the packmans are added as nodes to the corners graph, and the shortest paths are computed
+ * from every fruit and packman to all the nodes (fruits, packmans and corners), by the distance and the next node on the way.
+ * At the first tick:
+ * The order is built by nearest insertion, and improved by 2-opt and Or-opt.
+ * Every tick:
+ * The eaten fruits are removed from the order (and the order is improved again), and the player goes to the next node
+ * on the way to the first target. This is a lookup in the tables and one check of free path, there is no search.
+ * The packmans move, but their nodes, distances and costs in the order stay where they were at the scenario load:
+ * only the last pixel of the way (the packman himself) is his location now.
+ * Escaping from the ghosts is the same as in {@link Shortest}.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class TourPlanner extends Shortest {
+
+	private static final double UNREACHABLE = 1e9; //the cost of a pair without path between them
+	private static final int REACHED = 6; //how close (in pixels) the player should be to a corner, to go to the next one
+	private static final int MAX_PASSES = 50; //the limit of improvement passes
+
+	//the targets (fruits and packmans) of the scenario, target t is the node firstTarget+t
+	private int[] targetIds;
+	private HashMap<Integer, Integer> fruitIndex = new HashMap<>(); //id -> t, a fruit and a packman can have the same id
+	private HashMap<Integer, Integer> packmanIndex = new HashMap<>(); //id -> t
+	private Point3D[] targetLocation; //the last known location (the packmans move), only for aiming, not for the costs
+	private int firstTarget;
+
+	//the combined graph of the corners and the targets
+	private Pixel[] nodes;
+	private BitSet[] graph;
+	private double[][] distance; //distance[t][v] = the length of the shortest path from target t to node v
+	private int[][] toward; //toward[t][v] = the next node on the shortest path from node v to target t, -1 for t itself
+
+	//the tour
+	private int[] order; //the targets in the order of visiting
+	private int size = 0;
+	private double[] startDistance; //the distance from the player to every target, when the tour was planned
+	private int waypoint = -1; //the node that the player goes to now, on the way to order[0]
+	private final BitSet alive = new BitSet();
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public TourPlanner(AllObjects game, PanelBoard board) {
+		super(game, board);
+		buildTables();
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method adds the fruits and the packmans to the graph, and computes the distances tables.
+	 */
+	private void buildTables() {
+		int targets = game.fruits.size() + game.packmans.size();
+		targetIds = new int[targets];
+		targetLocation = new Point3D[targets];
+		int t = 0;
+		for (Fruit fruit: game.fruits)
+			addTarget(fruit, t++, fruitIndex);
+		for (Packman packman: game.packmans)
+			addTarget(packman, t++, packmanIndex);
+
+		//the nodes: 0 - the source, 1..corners - the corners, and then the targets
+		firstTarget = corners.length;
+		nodes = Arrays.copyOf(corners, firstTarget + targets);
+		graph = new BitSet[nodes.length];
+		graph[0] = new BitSet(nodes.length);
+		for (int i=1; i<firstTarget; i++)
+			graph[i] = (BitSet) matrixCorners[i].clone();
+
+		for (t=0; t<targets; t++) {
+			int node = firstTarget + t;
+			nodes[node] = board.map.gps2pixel(targetLocation[t], board.getWidth(), board.getHeight());
+			graph[node] = new BitSet(nodes.length);
+			for (int other=1; other<node; other++)
+				if (freePath(nodes[node], nodes[other])) {
+					graph[node].set(other);
+					graph[other].set(node);
+				}
+		}
+
+		//the shortest paths from every target, the predecessor of v is the next node from v to the target
+		PathEngine engine = new PathEngine(nodes.length);
+		PathEngine.Goal all = new PathEngine.Goal() {
+			@Override
+			public boolean reached(int node) {
+				return false; //compute the paths to all the nodes
+			}
+		};
+		distance = new double[targets][nodes.length];
+		toward = new int[targets][nodes.length];
+		for (t=0; t<targets; t++) {
+			engine.search(firstTarget + t, nodes, graph, all, null);
+			for (int v=0; v<nodes.length; v++) {
+				distance[t][v] = engine.getDistance(v);
+				toward[t][v] = engine.getPredecessor(v);
+			}
+		}
+		order = new int[targets];
+	}
+
+	private void addTarget(GenericGeoObject object, int t, HashMap<Integer, Integer> index) {
+		targetIds[t] = object.getId();
+		targetLocation[t] = object.getLocation();
+		index.put(object.getId(), t);
+	}
+
+	/**
+	 * This method goes to the next node on the way to the next target of the tour.
+	 * @param source The location of the player.
+	 * @return The pixel to go.
+	 */
+	@Override
+	protected Pixel nextTarget(Pixel source) {
+		if (targetIds.length == 0) //nothing was planned
+			return super.nextTarget(source);
+		if (startDistance == null)
+			planTour(source);
+		else
+			removeEaten(source);
+		if (size == 0) //new fruits that were not planned
+			return super.nextTarget(source);
+
+		int target = order[0];
+		if (waypoint == -1)
+			waypoint = bestEntry(source, target);
+		if (waypoint == -1) //he sees no node, Shortest finds the way (or nothing)
+			return super.nextTarget(source);
+
+		if (waypoint != firstTarget + target && source.distance(nodes[waypoint]) < REACHED) { //near the corner
+			//go on to the next node if he is seen from here, else get to the corner itself first
+			int next = toward[target][waypoint];
+			if (next != -1 && (source.equals(nodes[waypoint]) || freePath(source, aim(target, next))))
+				waypoint = next;
+			return aim(target, waypoint);
+		}
+
+		Pixel aim = aim(target, waypoint);
+		if (!freePath(source, aim)) { //the player is not on the way (for example after escaping a ghost)
+			waypoint = bestEntry(source, target);
+			if (waypoint == -1)
+				return super.nextTarget(source);
+			aim = aim(target, waypoint);
+			if (!freePath(source, aim)) { //the target moved behind a box, never go into the box
+				waypoint = -1;
+				return super.nextTarget(source);
+			}
+		}
+		return aim;
+	}
+
+	//the pixel of a node on the way, the target itself is in his last known location
+	private Pixel aim(int target, int node) {
+		if (node == firstTarget + target)
+			return board.map.gps2pixel(targetLocation[target], board.getWidth(), board.getHeight());
+		return nodes[node];
+	}
+
+	/**
+	 * This method finds the first node on the shortest path from the source to the target.
+	 * The distances to the target are already known, so it is only checking which nodes the source sees.
+	 * @param source The location of the player.
+	 * @param target The target.
+	 * @return The node to go, or -1 if the source sees no node.
+	 */
+	private int bestEntry(Pixel source, int target) {
+		int best = -1;
+		double bestDistance = Double.MAX_VALUE;
+		for (int v=1; v<nodes.length; v++) {
+			double viaV = source.distance(nodes[v]) + distance[target][v];
+			if (viaV < bestDistance && freePath(source, nodes[v])) {
+				bestDistance = viaV;
+				best = v;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * This method plans the order of the targets from the location of the player:
+	 * nearest insertion, and then 2-opt and Or-opt.
+	 * @param source The location of the player.
+	 */
+	private void planTour(Pixel source) {
+		int targets = targetIds.length;
+
+		startDistance = new double[targets];
+		measureStart(source);
+
+		//nearest insertion: add the target closest to the tour, at the place that adds the shortest distance
+		boolean[] inTour = new boolean[targets];
+		double[] closest = startDistance.clone(); //the distance from every target to the tour
+		size = 0;
+		for (int k=0; k<targets; k++) {
+			int next = -1;
+			for (int t=0; t<targets; t++)
+				if (!inTour[t] && (next == -1 || closest[t] < closest[next]))
+					next = t;
+
+			int place = size; //at the end
+			double bestAdded = linkTo(size-1, next);
+			for (int i=0; i<size; i++) {
+				double added = linkTo(i-1, next) + linkFrom(next, i) - link(i-1, i);
+				if (added < bestAdded) {
+					bestAdded = added;
+					place = i;
+				}
+			}
+			System.arraycopy(order, place, order, place+1, size-place);
+			order[place] = next;
+			size++;
+			inTour[next] = true;
+			for (int t=0; t<targets; t++)
+				closest[t] = Math.min(closest[t], cost(t, firstTarget + next));
+		}
+		improve();
+		removeEaten(source);
+	}
+
+	//the distance from the source to every target, through the nodes he sees
+	private void measureStart(Pixel source) {
+		Arrays.fill(startDistance, UNREACHABLE);
+		for (int v=1; v<nodes.length; v++) {
+			if (!freePath(source, nodes[v]))
+				continue;
+			for (int t=0; t<startDistance.length; t++)
+				startDistance[t] = Math.min(startDistance[t], source.distance(nodes[v]) + cost(t, v));
+		}
+	}
+
+	/**
+	 * This method removes the targets that were eaten (by the player or by the packmans) from the tour,
+	 * and updates the locations that the player aims at (the costs of the packmans stay from the planning). The rest of the tour is improved from where the player is now.
+	 * @param source The location of the player.
+	 */
+	private void removeEaten(Pixel source) {
+		alive.clear();
+		markAlive(game.fruits, fruitIndex);
+		markAlive(game.packmans, packmanIndex);
+
+		int first = size > 0 ? order[0] : -1;
+		int removed = 0;
+		for (int i=0; i<size; i++) {
+			if (alive.get(order[i]))
+				order[i-removed] = order[i];
+			else
+				removed++;
+		}
+		if (removed == 0)
+			return;
+		size -= removed;
+		measureStart(source); //the first target is chosen from here, not from the start of the game
+		improve();
+		if (size == 0 || order[0] != first)
+			waypoint = -1; //new first target, find the way to him
+
+	}
+
+	private void markAlive(ObjectTable<? extends GenericGeoObject> objects, HashMap<Integer, Integer> index) {
+		for (int slot=objects.first(); slot>=0; slot=objects.next(slot)) { //only the ids, from the arrays of the table
+			Integer t = index.get(objects.getId(slot));
+			if (t != null) {
+				alive.set(t);
+				targetLocation[t] = objects.get(slot).getLocation();
+			}
+		}
+	}
+
+	/**
+	 * This method improves the order by 2-opt (reversing a part of the tour)
+	 * and Or-opt (moving 1-3 targets to other place), until there is no improvement.
+	 */
+	private void improve() {
+		boolean improved = true;
+		for (int pass=0; improved && pass<MAX_PASSES; pass++) {
+			improved = false;
+
+			//2-opt
+			for (int i=0; i<size-1; i++)
+				for (int j=i+1; j<size; j++) {
+					double delta = linkTo(i-1, order[j]) + linkFrom(order[i], j+1) - link(i-1, i) - link(j, j+1);
+					if (delta < -1e-9) {
+						reverse(i, j);
+						improved = true;
+					}
+				}
+
+			//Or-opt
+			for (int length=1; length<=3; length++)
+				for (int i=0; i+length<=size; i++) {
+					int first = order[i];
+					int last = order[i+length-1];
+					double removeGain = link(i-1, i) + linkFrom(last, i+length) - link(i-1, i+length);
+					for (int p=-1; p<size; p++) { //insert after place p (-1 is after the player)
+						if (p >= i-1 && p < i+length)
+							continue;
+						double insertCost = linkTo(p, first) + linkFrom(last, p+1) - link(p, p+1);
+						if (insertCost - removeGain < -1e-9) {
+							move(i, length, p);
+							improved = true;
+							break;
+						}
+					}
+				}
+		}
+	}
+
+	//reverse order[i..j]
+	private void reverse(int i, int j) {
+		for (; i<j; i++, j--) {
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
+		}
+	}
+
+	//move order[i..i+length-1] to be after place p
+	private void move(int i, int length, int p) {
+		int[] part = Arrays.copyOfRange(order, i, i+length);
+		if (p < i) {
+			System.arraycopy(order, p+1, order, p+1+length, i-p-1);
+			System.arraycopy(part, 0, order, p+1, length);
+		}
+		else {
+			System.arraycopy(order, i+length, order, i, p-i-length+1);
+			System.arraycopy(part, 0, order, p-length+1, length);
+		}
+	}
+
+////////////////////////////////***Costs****///////////////////////////////////
+
+	//the distance from target t to node v
+	private double cost(int t, int v) {
+		double d = distance[t][v];
+		return d == Double.POSITIVE_INFINITY ? UNREACHABLE : d;
+	}
+
+	//the distance from the place i in the tour (-1 is the player) to target t
+	private double linkTo(int i, int t) {
+		if (i < 0)
+			return startDistance[t];
+		return cost(t, firstTarget + order[i]);
+	}
+
+	//the distance from target t to the place j in the tour, nothing after the end of the tour
+	private double linkFrom(int t, int j) {
+		if (j >= size)
+			return 0;
+		return cost(t, firstTarget + order[j]);
+	}
+
+	//the distance between the places i and j in the tour
+	private double link(int i, int j) {
+		if (j >= size)
+			return 0;
+		return linkTo(i, order[j]);
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	// the ids of the targets, in the order of visiting.
+	public int[] getTour() {
+		int[] tour = new int[size];
+		for (int i=0; i<size; i++)
+			tour[i] = targetIds[order[i]];
+		return tour;
+	}
+
+	// the planned length of the rest of the tour, from the player location at the planning.
+	public double getTourLength() {
+		if (size == 0)
+			return 0;
+		double length = startDistance[order[0]];
+		for (int i=1; i<size; i++)
+			length += link(i-1, i);
+		return length;
+	}
+}
@@ -0,0 +1,188 @@
+package convertor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import GeoObjects.AllObjects;
+import GeoObjects.Box;
+import GeoObjects.Fruit;
+import GeoObjects.GenericGeoObject;
+import GeoObjects.Ghost;
+import GeoObjects.ObjectTable;
+import GeoObjects.Packman;
+import GeoObjects.Player;
+import GeoObjects.Point3D;
+/**
+ * This class applies the board of the server (the rows of Play.getBoard) to the game that already exists,
+ * instead of making a new game in every tick like {@link Data2Game}.
+ * The objects are found by their id: a moved object gets the new location, a new object is added,
+ * and an object that is not in the board any more was eaten and is removed.
+ * The boxes never change, so they are read only once.
+ * The rows are scanned by a {@link CsvScanner} that is used again in every tick, so a tick that nothing
+ * moved in makes no new objects.
+ *
+ * Every change is sent to the {@link Listener}, so the GUI (sounds, labels) does not need to compare the game
+ * before and after.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class BoardUpdater {
+
+	//the columns of the board rows, like the titles of Data2Game
+	private static final int TYPE = 0, ID = 1, LAT = 2, LON = 3, ALT = 4, SPEED = 5, RADIUS = 6;
+
+	private Listener listener;
+	private final BitSet seenFruits = new BitSet(); //the slots that are in the board of this tick
+	private final BitSet seenPackmans = new BitSet();
+	private final BitSet seenGhosts = new BitSet();
+	private final CsvScanner scanner = new CsvScanner(); //the fields of the current row
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public BoardUpdater(Listener listener) {
+		this.listener = listener;
+	}
+
+	public BoardUpdater() {
+		this(new Adapter());
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method updates the game to the board of the server.
+	 * @param board_data The rows of the board, without titles.
+	 * @param game The game to update.
+	 */
+	public void apply(ArrayList<String> board_data, AllObjects game) {
+		seenFruits.clear();
+		seenPackmans.clear();
+		seenGhosts.clear();
+		boolean readBoxes = game.boxes.isEmpty();
+
+		for (int i=0; i<board_data.size(); i++) {
+			scanner.reset(board_data.get(i)); //no split, the fields are read from the buffer of the scanner
+			if (!scanner.nextRow())
+				continue;
+			if (scanner.is(TYPE, 'B')) {
+				if (readBoxes)
+					game.boxes.add(new Box(location(), scanner.getInt(ID),
+							new Point3D(scanner.getDouble(SPEED), scanner.getDouble(RADIUS), 0), 0.0, 0.0));
+				continue;
+			}
+
+			int id = scanner.getInt(ID);
+			double lat = scanner.getDouble(LAT);
+			double lon = scanner.getDouble(LON);
+			double alt = scanner.getDouble(ALT);
+			if (scanner.is(TYPE, 'F')) {
+				if (update(game.fruits, seenFruits, id, lat, lon, alt) == -1)
+					seenFruits.set(add(game.fruits, new Fruit(new Point3D(lat, lon, alt), id, scanner.getDouble(SPEED))));
+			}
+			else if (scanner.is(TYPE, 'P')) {
+				if (update(game.packmans, seenPackmans, id, lat, lon, alt) == -1)
+					seenPackmans.set(add(game.packmans, new Packman(new Point3D(lat, lon, alt), id,
+							scanner.getDouble(SPEED), scanner.getDouble(RADIUS))));
+			}
+			else if (scanner.is(TYPE, 'G')) {
+				int slot = game.ghosts.slot(id);
+				Point3D from = slot == -1 ? null : game.ghosts.get(slot).getLocation();
+				slot = update(game.ghosts, seenGhosts, id, lat, lon, alt);
+				if (slot == -1)
+					seenGhosts.set(add(game.ghosts, new Ghost(new Point3D(lat, lon, alt), id,
+							scanner.getDouble(SPEED), scanner.getDouble(RADIUS))));
+				else if (game.ghosts.get(slot).getLocation() != from)
+					listener.ghostMoved(game.ghosts.get(slot), from);
+			}
+			else if (scanner.is(TYPE, 'M')) {
+				if (game.player == null)
+					game.player = new Player(new Point3D(lat, lon, alt), id, scanner.getDouble(SPEED), scanner.getDouble(RADIUS));
+				else if (!same(game.player.getLocation(), lat, lon, alt))
+					game.player.setLocation(new Point3D(lat, lon, alt));
+			}
+		}
+
+		//the objects that are not in the board were eaten
+		for (int slot=game.fruits.first(); slot>=0; slot=game.fruits.next(slot))
+			if (!seenFruits.get(slot))
+				listener.fruitEaten(game.fruits.removeId(game.fruits.getId(slot)));
+		for (int slot=game.packmans.first(); slot>=0; slot=game.packmans.next(slot))
+			if (!seenPackmans.get(slot))
+				listener.packmanEaten(game.packmans.removeId(game.packmans.getId(slot)));
+		for (int slot=game.ghosts.first(); slot>=0; slot=game.ghosts.next(slot))
+			if (!seenGhosts.get(slot))
+				game.ghosts.removeId(game.ghosts.getId(slot));
+	}
+
+	/**
+	 * This method finds the object with the id, and moves him if his location was changed
+	 * (a new Point3D only if it was changed).
+	 * @return The slot of the object, or -1 if there is no object with this id.
+	 */
+	private int update(ObjectTable<?> table, BitSet seen, int id, double lat, double lon, double alt) {
+		int slot = table.slot(id);
+		if (slot == -1)
+			return -1;
+		if (table.getLat(slot) != lat || table.getLon(slot) != lon || table.getAlt(slot) != alt)
+			table.setLocation(slot, new Point3D(lat, lon, alt));
+		seen.set(slot);
+		return slot;
+	}
+
+	//adds the object and returns his slot
+	private <T extends GenericGeoObject> int add(ObjectTable<T> table, T object) {
+		table.add(object);
+		return table.slot(object.getId());
+	}
+
+	private Point3D location() {
+		return new Point3D(scanner.getDouble(LAT), scanner.getDouble(LON), scanner.getDouble(ALT));
+	}
+
+	private static boolean same(Point3D location, double lat, double lon, double alt) {
+		return location.x() == lat && location.y() == lon && location.z() == alt;
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * The changes that the updater finds in the board.
+	 */
+	public interface Listener {
+
+		// the fruit is not in the board any more, he was removed from the game.
+		void fruitEaten(Fruit fruit);
+
+		// the packman is not in the board any more, he was removed from the game.
+		void packmanEaten(Packman packman);
+
+		// the ghost has a new location.
+		void ghostMoved(Ghost ghost, Point3D from);
+	}
+
+	/**
+	 * A listener that does nothing, to override only the needed methods.
+	 */
+	public static class Adapter implements Listener {
+
+		@Override
+		public void fruitEaten(Fruit fruit) {
+		}
+
+		@Override
+		public void packmanEaten(Packman packman) {
+		}
+
+		@Override
+		public void ghostMoved(Ghost ghost, Point3D from) {
+		}
+	}
+
+}
@@ -1,8 +1,6 @@
 package convertor;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 
 import GeoObjects.AllObjects;
@@ -24,6 +22,7 @@ public class Csv2Game {
 	private File file;
 	private String csvName;
 	private int Type, id, Lat, Lon, Alt, speed, radius;
+	private final CsvScanner scanner = new CsvScanner(); //the rows of the file
 
 ///////////////////////////****************//////////////////////////////////////////
 ///////////////////////////*** Methods ***//////////////////////////////////////////
@@ -56,23 +55,20 @@ public class Csv2Game {
 	/**
 	 * This method take a csv file and knows to read from him the data, 
 	 * and fill all the object that will be in the game.
+	 * The file is read at once and the rows are scanned from the bytes ({@link CsvScanner}),
+	 * only the titles row is split to Strings.
 	 */
 	private void createGame() 
 	{
 		game =  new AllObjects();
-		try (BufferedReader br = new BufferedReader(new FileReader(file))) 
-		{
-
-			String line = ""; //one row from the csv file				
-			line = br.readLine();
-			setTitles(line.split(","));
-
-			while ((line = br.readLine()) != null) //add rows
-			{
-				String[] csvRow = line.split(","); //one row from the csv file, separated
-				addData(csvRow); ///add to the sets
-			}
-
+		try {
+			scanner.reset(file);
+			if (!scanner.nextRow())
+				return;
+			setTitles(scanner.getStrings());
+
+			while (scanner.nextRow()) //add rows
+				addData(scanner); ///add to the sets
 		}
 		catch (IOException e) 
 		{
@@ -158,6 +154,32 @@ public class Csv2Game {
 		}
 	}
 
+	/**
+	 * This function is like {@link #addData(String[])}, on the current row of the scanner:
+	 * the numbers are parsed from the bytes, and every field is parsed once.
+	 * @param row The scanner, on the row to add.
+	 */
+	public void addData(CsvScanner row)
+	{
+		Point3D point1 = new Point3D(row.getDouble(Lat), row.getDouble(Lon), row.getDouble(Alt));
+		if (row.is(Type, 'P'))
+			game.packmans.add(new Packman(point1, row.getInt(id), row.getDouble(speed), row.getDouble(radius)));
+
+		else if (row.is(Type, 'F'))
+			game.fruits.add(new Fruit(point1, row.getInt(id), row.getDouble(speed)));
+
+		else if (row.is(Type, 'G'))
+			game.ghosts.add(new Ghost(point1, row.getInt(id), row.getDouble(speed), row.getDouble(radius)));
+
+		else if (row.is(Type, 'B')) {
+			Point3D point2 = new Point3D(row.getDouble(speed), row.getDouble(radius), 0);
+			game.boxes.add(new Box(point1, row.getInt(id), point2, 0.0, 0.0));
+		}
+
+		else if (row.is(Type, 'M'))
+			game.player = new Player(point1, row.getInt(id), row.getDouble(speed), row.getDouble(radius));
+	}
+
 ////////////////////*** Getters and Setters**//////////////////////////////////////
 
 	public AllObjects getGame() {
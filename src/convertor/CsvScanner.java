@@ -0,0 +1,284 @@
+package convertor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * This class reads csv rows from bytes, without making a String for every row and every field.
+ * The scanner keeps only the offsets of the fields of the current row (in arrays that are used again),
+ * and the numbers are parsed from the bytes.
+ *
+ * Numbers: a decimal number with at most 18 digits (without the point), and at most 22 digits after the point,
+ * is computed from his digits as long. If the digits are less than 2^53 (15-16 digits), digits / 10^k is exact,
+ * because both are exact doubles and the division is rounded once. With more digits (like most of the locations,
+ * that have 17 digits) the division can be wrong in the last bit, so the result is moved to the double that
+ * the exact value is closest to, by comparing with the middle points in 128 bit integers.
+ * So the result is always the same double as {@link Double#parseDouble}.
+ * Other numbers (more digits, exponent, NaN...) are parsed by Double.parseDouble.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class CsvScanner {
+
+	private static final long MAX_EXACT = 1L << 53; //the integers that are exact doubles
+	private static final long MAX_DIGITS = 100000000000000000L; //10^17, the digits are less than 10^18
+	private static final double[] POWERS_OF_TEN = new double[23]; //10^0..10^22 are exact doubles
+	private static final long[] POWERS_OF_FIVE = new long[23];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		POWERS_OF_FIVE[0] = 1;
+		for (int i=1; i<POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1] * 10;
+			POWERS_OF_FIVE[i] = POWERS_OF_FIVE[i-1] * 5;
+		}
+	}
+
+	private byte[] data = new byte[0];
+	private byte[] buffer = new byte[64]; //the chars of reset(String), used again
+	private int position = 0; //the start of the next row
+	private int end = 0;
+	private int[] starts = new int[16]; //the fields of the current row are data[starts[i]..ends[i]-1]
+	private int[] ends = new int[16];
+	private int fields = 0;
+	private long fastNumbers = 0; //statistics
+	private long slowNumbers = 0;
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method reads all the file in one read, the rows are scanned from the bytes.
+	 * @param file The csv file.
+	 * @throws IOException if the file can't be read.
+	 */
+	public void reset(File file) throws IOException {
+		reset(Files.readAllBytes(file.toPath()));
+	}
+
+	public void reset(byte[] data) {
+		this.data = data;
+		position = 0;
+		end = data.length;
+		fields = 0;
+	}
+
+	/**
+	 * This method scans one String (like a row of the board from the server).
+	 * The chars are copied to the buffer of the scanner, that is used again for the next String,
+	 * so there are no new objects after the buffer is big enough. The csv is ascii.
+	 * @param line The rows.
+	 */
+	public void reset(String line) {
+		if (buffer.length < line.length())
+			buffer = new byte[Math.max(line.length(), 2*buffer.length)];
+		for (int i=0; i<line.length(); i++)
+			buffer[i] = (byte)line.charAt(i);
+		data = buffer;
+		position = 0;
+		end = line.length();
+		fields = 0;
+	}
+
+	/**
+	 * This method moves to the next row, and finds his fields (empty rows are skipped).
+	 * @return False if there are no more rows.
+	 */
+	public boolean nextRow() {
+		while (position < end && (data[position] == '\n' || data[position] == '\r'))
+			position++;
+		if (position >= end)
+			return false;
+
+		fields = 0;
+		int start = position;
+		int i = position;
+		while (i < end && data[i] != '\n' && data[i] != '\r') {
+			if (data[i] == ',') {
+				addField(start, i);
+				start = i+1;
+			}
+			i++;
+		}
+		addField(start, i);
+		position = i;
+		return true;
+	}
+
+	private void addField(int start, int stop) {
+		if (fields == starts.length) {
+			starts = Arrays.copyOf(starts, fields*2);
+			ends = Arrays.copyOf(ends, fields*2);
+		}
+		starts[fields] = start;
+		ends[fields] = stop;
+		fields++;
+	}
+
+	/**
+	 * This method parses the field as a double, like Double.parseDouble on the field.
+	 * @param field The number of the field in the row.
+	 * @return The number.
+	 * @throws NumberFormatException if the field is not a number.
+	 * @throws ArrayIndexOutOfBoundsException if the row has no such field (like String.split).
+	 */
+	public double getDouble(int field) {
+		if (field >= fields)
+			throw new ArrayIndexOutOfBoundsException(field);
+		int i = starts[field];
+		int stop = ends[field];
+		boolean negative = false;
+		if (i < stop && (data[i] == '-' || data[i] == '+')) {
+			negative = data[i] == '-';
+			i++;
+		}
+
+		long digits = 0;
+		int decimals = 0;
+		boolean point = false;
+		boolean any = false;
+		for (; i < stop; i++) {
+			byte b = data[i];
+			if (b >= '0' && b <= '9') {
+				if (digits >= MAX_DIGITS)
+					return slowDouble(field);
+				digits = digits*10 + (b - '0');
+				if (point)
+					decimals++;
+				any = true;
+			}
+			else if (b == '.' && !point)
+				point = true;
+			else
+				return slowDouble(field); //exponent, spaces, NaN...
+		}
+		if (!any || decimals >= POWERS_OF_TEN.length)
+			return slowDouble(field);
+
+		fastNumbers++;
+		double value;
+		if (decimals == 0)
+			value = digits; //long to double is rounded once
+		else if (digits < MAX_EXACT)
+			value = digits / POWERS_OF_TEN[decimals];
+		else
+			value = divide(digits, decimals);
+		return negative ? -value : value;
+	}
+
+	/**
+	 * This method computes digits / 10^decimals rounded to the closest double (ties to even),
+	 * when the digits are not an exact double.
+	 * The double division is wrong in at most one bit, so the result is checked against the middle points
+	 * to his neighbours and moved if the exact value is on the other side.
+	 */
+	private static double divide(long digits, int decimals) {
+		double value = (double)digits / POWERS_OF_TEN[decimals];
+		int down;
+		while ((down = compareMiddle(digits, decimals, value, false)) < 0 || (down == 0 && odd(value)))
+			value = Math.nextDown(value);
+		int up;
+		while ((up = compareMiddle(digits, decimals, value, true)) > 0 || (up == 0 && odd(value)))
+			value = Math.nextUp(value);
+		return value;
+	}
+
+	private static boolean odd(double value) {
+		return (Double.doubleToRawLongBits(value) & 1) != 0;
+	}
+
+	/**
+	 * This method compares digits / 10^decimals with the middle point between value and his neighbour
+	 * (value is a positive normal double).
+	 * The middle is M*2^E, so the compare is between digits and M*5^decimals*2^(E+decimals), in 128 bits.
+	 * @param up The neighbour above the value, or below.
+	 * @return -1, 0 or 1, like digits / 10^decimals - middle.
+	 */
+	private static int compareMiddle(long digits, int decimals, double value, boolean up) {
+		long bits = Double.doubleToRawLongBits(value);
+		long mantissa = (bits & ((1L << 52) - 1)) | (1L << 52);
+		int exponent = (int)(bits >>> 52) - 1075; //value = mantissa * 2^exponent
+		long middle;
+		if (up)
+			middle = 2*mantissa + 1;
+		else if (mantissa == (1L << 52)) { //a power of two, the neighbour below is closer
+			middle = 4*mantissa - 1;
+			exponent--;
+		}
+		else
+			middle = 2*mantissa - 1;
+		exponent--; //middle * 2^exponent
+
+		//middle * 5^decimals, less than 2^108
+		long five = POWERS_OF_FIVE[decimals];
+		long high = Math.multiplyHigh(middle, five);
+		long low = middle * five;
+		int shift = exponent + decimals;
+
+		if (shift >= 0) { //compare digits with the product << shift
+			int length = high != 0 ? 128 - Long.numberOfLeadingZeros(high) : 64 - Long.numberOfLeadingZeros(low);
+			if (length + shift > 63)
+				return -1;
+			return Long.compare(digits, low << shift);
+		}
+		//compare digits << -shift with the product
+		shift = -shift;
+		if (64 - Long.numberOfLeadingZeros(digits) + shift > 127)
+			return 1;
+		long digitsHigh = shift >= 64 ? digits << (shift - 64) : digits >>> (64 - shift);
+		long digitsLow = shift >= 64 ? 0 : digits << shift;
+		if (digitsHigh != high)
+			return Long.compareUnsigned(digitsHigh, high);
+		return Long.compareUnsigned(digitsLow, low);
+	}
+
+	private double slowDouble(int field) {
+		slowNumbers++;
+		return Double.parseDouble(getString(field));
+	}
+
+	// the field as int, like (int)Double.parseDouble.
+	public int getInt(int field) {
+		return (int)getDouble(field);
+	}
+
+	/**
+	 * @return True if the field is exactly this one char (like the type "P").
+	 */
+	public boolean is(int field, char c) {
+		return field < fields && ends[field] - starts[field] == 1 && data[starts[field]] == c;
+	}
+
+	// the field as String (a new object).
+	public String getString(int field) {
+		if (field >= fields)
+			throw new ArrayIndexOutOfBoundsException(field);
+		return new String(data, starts[field], ends[field] - starts[field], StandardCharsets.ISO_8859_1);
+	}
+
+	// all the fields of the row as Strings, like split(",") (for the titles).
+	public String[] getStrings() {
+		String[] row = new String[fields];
+		for (int i=0; i<fields; i++)
+			row[i] = getString(i);
+		return row;
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public int getFields() {
+		return fields;
+	}
+
+	public long getFastNumbers() {
+		return fastNumbers;
+	}
+
+	public long getSlowNumbers() {
+		return slowNumbers;
+	}
+
+}
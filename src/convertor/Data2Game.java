@@ -10,28 +10,44 @@ import GeoObjects.AllObjects;
  */
 public class Data2Game {
 	
-	private String[] csvRow;
+	private final Csv2Game csvConvertor = new Csv2Game(); //the titles are set once
+	private final CsvScanner scanner = new CsvScanner(); //the fields of the current row, the buffers are used again
+	private final BoardUpdater updater = new BoardUpdater();
 
 ////////////////////////***Constructor****///////////////////////////////////////////
 	
 	public Data2Game() {
-		super();
+		String[] titles = {"Type","ID","Lat","Lon","Alt","Speed/Weight","Radius"};
+		csvConvertor.setTitles(titles);
 	}
 	
 ///////////////////////////*** Methods ***//////////////////////////////////////////
 
+	/**
+	 * This method makes a new game from the board (the rows are scanned without split).
+	 * @param board_data The rows of the board.
+	 * @return The new game.
+	 */
 	public AllObjects convert(ArrayList<String> board_data) {
-		Csv2Game csvConvertor = new Csv2Game();
 		csvConvertor.setGame(new AllObjects());
-		String[] titles = {"Type","ID","Lat","Lon","Alt","Speed/Weight","Radius"};
-		csvConvertor.setTitles(titles);
-		
 		for(int i=0;i<board_data.size();i++) {
-			String line = board_data.get(i);
-			csvRow = line.split(",");
-			csvConvertor.addData(csvRow);
+			scanner.reset(board_data.get(i));
+			if (scanner.nextRow())
+				csvConvertor.addData(scanner);
 		}
 		return csvConvertor.getGame();
 	}
 
+	/**
+	 * This method writes the board into a game that already exists (see {@link BoardUpdater}),
+	 * the objects that did not change are not made again.
+	 * @param board_data The rows of the board.
+	 * @param game The game to update.
+	 * @return The game.
+	 */
+	public AllObjects convert(ArrayList<String> board_data, AllObjects game) {
+		updater.apply(board_data, game);
+		return game;
+	}
+
 }
@@ -0,0 +1,276 @@
+package convertor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import GeoObjects.AllObjects;
+import GeoObjects.Box;
+import GeoObjects.Fruit;
+import GeoObjects.GenericGeoObject;
+import GeoObjects.Ghost;
+import GeoObjects.Packman;
+import GeoObjects.Player;
+import GeoObjects.Point3D;
+import algorithm.GraphCache;
+import algorithm.SegmentGrid;
+import algorithm.Shortest;
+import gui.PanelBoard;
+import guiObjects.Pixel;
+/**
+ * This class saves a scenario in a compiled binary file, next to his csv file (the same name + ".ex4"):
+ * all the objects of the game, and the corners graph of {@link Shortest} for one board size.
+ * Loading the compiled file reads the objects without parsing the csv, and puts the graph in the
+ * {@link Shortest#graphCache}, so the first Shortest on this board size does not build the graph.
+ *
+ * The file starts with a magic number and a version, it has the length and the CRC32 of the csv
+ * (an old compiled file is not used after the csv was changed), and it ends with a CRC32 of all the bytes before it.
+ * It is read in one buffer on the heap, not memory mapped: a mapped file stays open until the buffer is collected,
+ * and then it can not be compiled again on Windows. It is written to a temporary file that replaces the old one.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class ScenarioFile {
+
+	public static final String EXTENSION = ".ex4";
+	private static final int MAGIC = 0x45583453; //"EX4S"
+	private static final int VERSION = 1;
+
+	private ScenarioFile() {
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	// the compiled file of this csv file.
+	public static File compiledFile(File csv) {
+		return new File(csv.getPath() + EXTENSION);
+	}
+
+	/**
+	 * This method writes the compiled file of the scenario.
+	 * @param csv The csv file of the scenario (his length and CRC32 are saved).
+	 * @param game The objects of the scenario.
+	 * @param algo The graph of the boxes, for the size of his board (null to save only the objects).
+	 * @param width The width of the board of the graph.
+	 * @param height The height of the board of the graph.
+	 * @throws IOException if the file can't be written, then there is no compiled file (the old one is deleted).
+	 */
+	public static void write(File csv, AllObjects game, Shortest algo, int width, int height) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(csv.length());
+		out.writeLong(checksum(csv));
+		out.writeInt(width);
+		out.writeInt(height);
+
+		//the objects
+		out.writeInt(game.fruits.size());
+		out.writeInt(game.packmans.size());
+		out.writeInt(game.ghosts.size());
+		out.writeInt(game.boxes.size());
+		out.writeBoolean(game.player != null);
+		for (Fruit fruit: game.fruits) {
+			writeLocation(out, fruit);
+			out.writeDouble(fruit.getSpd_wt());
+		}
+		for (Packman packman: game.packmans)
+			writeRobot(out, packman);
+		for (Ghost ghost: game.ghosts)
+			writeRobot(out, ghost);
+		for (Box box: game.boxes) {
+			out.writeInt(box.getId());
+			writePoint(out, box.getSw());
+			writePoint(out, box.getNe());
+		}
+		if (game.player != null)
+			writeRobot(out, game.player);
+
+		//the graph, without the source (corners[0])
+		int corners = algo == null ? 0 : algo.corners.length;
+		out.writeInt(corners);
+		int words = (corners + 63) / 64;
+		for (int i=1; i<corners; i++) {
+			out.writeInt(algo.corners[i].x());
+			out.writeInt(algo.corners[i].y());
+		}
+		for (int i=1; i<corners; i++) {
+			long[] row = algo.matrixCorners[i].toLongArray();
+			for (int w=0; w<words; w++)
+				out.writeLong(w < row.length ? row[w] : 0);
+		}
+		out.flush();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeInt((int)crc.getValue());
+		out.close();
+
+		//write all of it, and only then replace the old file, so a failed write does not leave half a file
+		Path target = compiledFile(csv).toPath();
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		try {
+			Files.write(temporary, bytes.toByteArray());
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(temporary);
+			Files.deleteIfExists(target); //the old compiled file is not of this csv anymore
+			throw e;
+		}
+	}
+
+	/**
+	 * This method reads the compiled file of the csv.
+	 * @param csv The csv file of the scenario.
+	 * @return The scenario.
+	 * @throws IOException if there is no compiled file, it was compiled from other version of the csv, or it is not valid
+	 * (magic, version or checksum).
+	 */
+	public static Scenario read(File csv) throws IOException {
+		File file = compiledFile(csv);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer in = ByteBuffer.allocate((int)channel.size());
+			while (in.hasRemaining())
+				if (channel.read(in) == -1)
+					throw new IOException(file + " was changed while reading");
+			in.flip();
+			if (in.limit() < 24 || in.getInt(0) != MAGIC)
+				throw new IOException(file + " is not a compiled scenario");
+			if (in.getInt(4) != VERSION)
+				throw new IOException(file + " has version " + in.getInt(4) + ", not " + VERSION);
+
+			CRC32 crc = new CRC32();
+			ByteBuffer content = in.duplicate();
+			content.limit(in.limit() - 4);
+			crc.update(content);
+			if ((int)crc.getValue() != in.getInt(in.limit() - 4))
+				throw new IOException(file + " is corrupted (checksum)");
+
+			in.position(8);
+			if (in.getLong() != csv.length() || in.getLong() != checksum(csv))
+				throw new IOException(file + " was compiled from other version of " + csv);
+			Scenario scenario = new Scenario(in.getInt(), in.getInt());
+
+			//the objects
+			AllObjects game = scenario.game;
+			int fruits = in.getInt();
+			int packmans = in.getInt();
+			int ghosts = in.getInt();
+			int boxes = in.getInt();
+			boolean player = in.get() != 0;
+			for (int i=0; i<fruits; i++) {
+				int id = in.getInt();
+				game.fruits.add(new Fruit(readPoint(in), id, in.getDouble()));
+			}
+			for (int i=0; i<packmans; i++) {
+				int id = in.getInt();
+				game.packmans.add(new Packman(readPoint(in), id, in.getDouble(), in.getDouble()));
+			}
+			for (int i=0; i<ghosts; i++) {
+				int id = in.getInt();
+				game.ghosts.add(new Ghost(readPoint(in), id, in.getDouble(), in.getDouble()));
+			}
+			for (int i=0; i<boxes; i++) {
+				int id = in.getInt();
+				Point3D sw = readPoint(in);
+				game.boxes.add(new Box(sw, id, readPoint(in), 0.0, 0.0));
+			}
+			if (player) {
+				int id = in.getInt();
+				game.player = new Player(readPoint(in), id, in.getDouble(), in.getDouble());
+			}
+
+			//the graph
+			int corners = in.getInt();
+			if (corners > 0) {
+				scenario.corners = new Pixel[corners];
+				scenario.matrixCorners = new BitSet[corners];
+				for (int i=1; i<corners; i++)
+					scenario.corners[i] = new Pixel(in.getInt(), in.getInt());
+				long[] row = new long[(corners + 63) / 64];
+				for (int i=1; i<corners; i++) {
+					for (int w=0; w<row.length; w++)
+						row[w] = in.getLong();
+					scenario.matrixCorners[i] = BitSet.valueOf(row);
+				}
+			}
+			return scenario;
+		}
+		catch (java.nio.BufferUnderflowException e) {
+			throw new IOException(file + " is too short", e);
+		}
+	}
+
+	//the CRC32 of the csv file (only read, not parsed)
+	private static long checksum(File csv) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(Files.readAllBytes(csv.toPath()));
+		return crc.getValue();
+	}
+
+	private static void writeLocation(DataOutputStream out, GenericGeoObject object) throws IOException {
+		out.writeInt(object.getId());
+		writePoint(out, object.getLocation());
+	}
+
+	private static void writeRobot(DataOutputStream out, GenericGeoObject object) throws IOException {
+		writeLocation(out, object);
+		out.writeDouble(object.getSpd_wt());
+		out.writeDouble(object.getRadius());
+	}
+
+	private static void writePoint(DataOutputStream out, Point3D point) throws IOException {
+		out.writeDouble(point.x());
+		out.writeDouble(point.y());
+		out.writeDouble(point.z());
+	}
+
+	private static Point3D readPoint(ByteBuffer in) {
+		return new Point3D(in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * A scenario that was read from a compiled file.
+	 */
+	public static class Scenario {
+
+		public final AllObjects game = new AllObjects();
+		public final int width; //the board size of the graph
+		public final int height;
+		public Pixel[] corners; //the graph, null if it was not saved
+		public BitSet[] matrixCorners;
+
+		Scenario(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * This method puts the graph in the cache of Shortest, if it was computed for the size of this board.
+		 * Only the grid of the frames is built here, the graph is not built again.
+		 * @param board The board of the game.
+		 * @return True if the graph was put in the cache.
+		 */
+		public boolean seed(PanelBoard board) {
+			if (corners == null || board.getWidth() != width || board.getHeight() != height)
+				return false;
+			GraphCache.Key key = new GraphCache.Key(game.boxes, width, height);
+			Shortest.graphCache.put(key, corners, matrixCorners, new SegmentGrid(game.boxes, board));
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.LongAdder;
+
+import GeoObjects.AllObjects;
+import GeoObjects.Box;
+import guiObjects.DirtyRegions;
+import guiObjects.Pixel;
+import guiObjects.PixelBuffer;
+
+/**
+ * This class draws a {@link GameSnapshot} on the board in two layers:
+ * the static layer - the map, the boxes and the fruits, in one cached image (see {@link #staticLayer(GameSnapshot, int, int)}),
+ * the sprites - the packmans, the ghosts and the player, drawn on it in every frame.
+ * The time of every layer is measured (see {@link #getStaticLayerTime()}).
+ *
+ * The renderer keeps his images between the frames, so every thread that draws the board has his own renderer
+ * (the event thread in {@link PanelBoard#paint}, and the render thread of {@link RenderLoop}).
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class BoardRenderer {
+
+	private static final int MAX_REPAIRS = 8;
+
+	private final PanelBoard board; //the map and the images of the sprites
+	private final PixelBuffer pixels = new PixelBuffer(); //the pixels of the objects, used again in every frame
+	private BufferedImage background; //the map image in the size of the board, in the format of the screen
+
+	//the static layer
+	private BufferedImage layer;
+	private AllObjects layerGame; //the game of the layer
+	private int layerBoxes;
+	private GameSnapshot.Fruits layerFruitsOf; //the fruits that are in the layer
+	private final PanelBoard.Sprites layerFruits = new PanelBoard.Sprites(); //the places of the fruits in the layer
+	private final DirtyRegions layerRepairs = new DirtyRegions(MAX_REPAIRS); //the places of the fruits that changed
+	private final Rectangle[] repairing = new Rectangle[MAX_REPAIRS];
+	private int layerBuilds = 0;
+	//the time of the layers in all the frames, reset and read by the game thread while the renderer draws
+	private final LongAdder staticNanos = new LongAdder();
+	private final LongAdder spriteNanos = new LongAdder();
+	private final LongAdder frames = new LongAdder();
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public BoardRenderer(PanelBoard board) {
+		this.board = board;
+		for (int i=0; i<MAX_REPAIRS; i++)
+			repairing[i] = new Rectangle();
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method draws the snapshot, only in the clip of g.
+	 * @param g The graphics of the board (or of a buffer in the size of the board).
+	 * @param snapshot The game, null for only the map.
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 */
+	public void render(Graphics g, GameSnapshot snapshot, int width, int height) {
+		long start = System.nanoTime();
+		BufferedImage layer = staticLayer(snapshot, width, height);
+		if (layer != null)
+			g.drawImage(layer, 0, 0, null); //only the clip is copied
+		long middle = System.nanoTime();
+		staticNanos.add(middle - start);
+
+		if (snapshot != null) {
+			//draw packmans (all the pixels are converted in one loop)
+			pixels.project(snapshot.packmanLat, snapshot.packmanLon, board.map, width, height);
+			for (int i=0; i<pixels.size(); i++)
+				drawSprite(g, board.packmanImage, pixels.x[i], pixels.y[i]);
+
+			//draw ghosts
+			pixels.project(snapshot.ghostLat, snapshot.ghostLon, board.map, width, height);
+			for (int i=0; i<pixels.size(); i++)
+				drawSprite(g, board.ghostImage, pixels.x[i], pixels.y[i]);
+
+			//draw player
+			if (snapshot.hasPlayer) {
+				pixels.clear();
+				pixels.add(snapshot.playerLat, snapshot.playerLon);
+				pixels.project(board.map, width, height);
+				drawSprite(g, board.playerImage, pixels.x[0], pixels.y[0]);
+			}
+		}
+		spriteNanos.add(System.nanoTime() - middle);
+		frames.increment();
+	}
+
+	/**
+	 * This method returns the static layer: the map, the boxes and the fruits of the snapshot.
+	 * The layer is made again only after resize or for a new game. When fruits are eaten (or added),
+	 * only their places are painted again in the layer.
+	 * @return The layer, or null if the board has no size yet.
+	 */
+	private BufferedImage staticLayer(GameSnapshot snapshot, int width, int height) {
+		BufferedImage background = scaledBackground(width, height);
+		if (background == null || snapshot == null)
+			return background;
+		if (layer == null || layer.getWidth() != width || layer.getHeight() != height || layerGame != snapshot.source
+				|| layerBoxes != snapshot.boxes.length) {
+			layer = compatibleImage(width, height);
+			layerGame = snapshot.source;
+			layerBoxes = snapshot.boxes.length;
+			layerFruits.clear();
+			placeFruits(snapshot.fruits);
+			layerRepairs.clear(); //all the layer is painted
+			Graphics2D g = layer.createGraphics();
+			paintStatic(g, background, snapshot);
+			g.dispose();
+			layerBuilds++;
+		}
+		else if (layerFruitsOf != snapshot.fruits) {
+			placeFruits(snapshot.fruits); //the places of the fruits that were removed or added
+			int count = layerRepairs.drain(repairing);
+			Graphics2D g = layer.createGraphics();
+			for (int i=0; i<count; i++) {
+				g.setClip(repairing[i]);
+				paintStatic(g, background, snapshot);
+			}
+			g.dispose();
+		}
+		return layer;
+	}
+
+	//puts the fruits in layerFruits, the places that changed are in layerRepairs
+	private void placeFruits(GameSnapshot.Fruits fruits) {
+		layerFruitsOf = fruits;
+		pixels.project(fruits.lat, fruits.lon, board.map, layer.getWidth(), layer.getHeight());
+		for (int i=0; i<pixels.size(); i++)
+			layerFruits.place(fruits.slots[i], board.fruitsImages[fruits.images[i]], pixels.x[i], pixels.y[i], layerRepairs);
+		layerFruits.removeOthers(layerRepairs);
+	}
+
+	//paints the map, the boxes and the fruits, only in the clip of g
+	private void paintStatic(Graphics2D g, BufferedImage background, GameSnapshot snapshot) {
+		g.drawImage(background, 0, 0, null);
+
+		//draw boxes
+		g.setColor(Color.BLACK);
+		for (Box box: snapshot.boxes) {
+			Box.Geometry geometry = box.getGeometry(board); //computed again only after resize
+			Pixel nw = geometry.corners[1];
+			if (g.hitClip(nw.x(), nw.y(), geometry.right - nw.x(), geometry.bottom - nw.y()))
+				g.fillRect(nw.x(), nw.y(), geometry.right - nw.x(), geometry.bottom - nw.y());
+		}
+
+		//draw fruits
+		GameSnapshot.Fruits fruits = snapshot.fruits;
+		pixels.project(fruits.lat, fruits.lon, board.map, background.getWidth(), background.getHeight());
+		for (int i=0; i<pixels.size(); i++)
+			drawSprite(g, board.fruitsImages[fruits.images[i]], pixels.x[i], pixels.y[i]);
+	}
+
+	//draws the image in the center of the pixel, if it is in the clip
+	private static void drawSprite(Graphics g, BufferedImage image, int x, int y) {
+		if (image != null && g.hitClip(x - image.getWidth()/2, y - image.getHeight()/2, image.getWidth(), image.getHeight()))
+			g.drawImage(image, x - image.getWidth()/2, y - image.getHeight()/2, null);
+	}
+
+	/**
+	 * This method returns the map image scaled to the size of the board.
+	 * The image is compatible with the screen, so drawing it is only a copy (and can be accelerated),
+	 * and it is scaled again only when the size of the board changes.
+	 * @return The scaled image, or null if the board has no size yet.
+	 */
+	private BufferedImage scaledBackground(int width, int height) {
+		if (width <= 0 || height <= 0)
+			return null;
+		if (background == null || background.getWidth() != width || background.getHeight() != height) {
+			BufferedImage scaled = compatibleImage(width, height);
+			Graphics2D g = scaled.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR); //only once, so it can be smooth
+			g.drawImage(board.map.myImage, 0, 0, width, height, null);
+			g.dispose();
+			background = scaled;
+		}
+		return background;
+	}
+
+	//an image in the format of the screen
+	private BufferedImage compatibleImage(int width, int height) {
+		GraphicsConfiguration configuration = board.getGraphicsConfiguration();
+		return configuration != null ? configuration.createCompatibleImage(width, height)
+				: new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB); //not on a screen yet
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	// the average time of the static layer in a frame (made again, repaired and copied), in milliseconds.
+	public double getStaticLayerTime() {
+		long frames = this.frames.sum();
+		return frames == 0 ? 0 : staticNanos.sum() / 1000000.0 / frames;
+	}
+
+	// the average time of the sprites layer in a frame, in milliseconds.
+	public double getSpriteLayerTime() {
+		long frames = this.frames.sum();
+		return frames == 0 ? 0 : spriteNanos.sum() / 1000000.0 / frames;
+	}
+
+	// how many frames since the last reset.
+	public int getFrames() {
+		return (int)frames.sum();
+	}
+
+	// how many times the static layer was made from the start.
+	public int getLayerBuilds() {
+		return layerBuilds;
+	}
+
+	public void resetFrameTimes() {
+		staticNanos.reset();
+		spriteNanos.reset();
+		frames.reset();
+	}
+
+}
@@ -0,0 +1,429 @@
+package gui;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import GeoObjects.AllObjects;
+import Robot.Play;
+import algorithm.Planner;
+import algorithm.Prediction;
+import audio.EatingSound;
+import audio.SimplePlayer;
+import gameData.Report;
+
+/**
+ * This class runs a game with the server in stages, instead of one thread that does everything and sleeps:
+ *
+ * poll - a scheduler at a fixed rate calls the server: sends the last direction (rotate),
+ * and takes the statistics and the board. All the calls to {@link Play} in the game are done in this thread.
+ * parse - the game thread parses the report, and applies the board to the game.
+ * plan - the game thread refreshes the planner and finds the new direction.
+ * command - the direction goes back to the poll thread, that sends it in the next tick.
+ * The board is painted by the event thread (repaint), and is not a stage of the loop. The event thread never reads
+ * the game while it runs: parse makes an immutable {@link GameSnapshot} of the game and publishes it to the board.
+ * In the active rendering mode the snapshot goes to the render thread of {@link RenderLoop} too, he draws the newest
+ * one at the refresh rate of the display.
+ *
+ * The stages are connected by bounded {@link HandoffQueue}s, so a slow planner does not delay the next poll:
+ * the ticks that came while he was planning wait in the queue, and only the newest one is used
+ * (every board has all the objects, so an older board is not needed).
+ * Parse and plan are in the same thread because the game tables have one writer, and the planner reads them.
+ *
+ * In the speculative mode the plan is made one tick early: after a board is parsed, the player and the ghosts
+ * are moved one more step ({@link Prediction}), and the planner thread plans on this guess while the poll thread
+ * takes the next board. When the board comes, if the guess holds (within the tolerance) the plan is sent
+ * as it is, else the planner plans again on the real board. Every decision has a deadline from his board:
+ * a plan that is not ready by then is not waited for, and the player keeps the last direction.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class GameLoop {
+
+	public static final long PERIOD = 30; //milliseconds between two polls
+	private static final int QUEUE = 4;
+	public static final long DEADLINE = 20; //milliseconds from the board to the decision, in the speculative mode
+	public static final double TOLERANCE = 2.0; //meters between the guess and the board, in the speculative mode
+
+	private final MainWindow window;
+	private final Play play;
+	private final boolean automatic;
+	private final boolean speculative;
+	private RenderLoop render; //the active rendering mode, else null
+	private GameSnapshot snapshot; //the last snapshot that parse published
+	private final HandoffQueue<Tick> ticks = new HandoffQueue<Tick>(QUEUE); //poll -> parse
+	private final HandoffQueue<Double> commands = new HandoffQueue<Double>(QUEUE); //plan -> poll
+	private ScheduledExecutorService scheduler;
+	private volatile boolean finished = false;
+	private volatile String lastStatistics; //of the game after the server stopped
+	private double heading; //the direction that the poll thread sends
+	//the speculative mode, only the game thread uses them
+	private ExecutorService planner; //the thread of the planner, one plan at a time
+	private Prediction prediction;
+	private Future<Plan> pending; //the plan that the planner thread is working on
+	private boolean pendingAhead; //the pending plan is on the guess of the next tick
+	private int pendingFor; //the number of the tick that the pending plan is for
+
+	//statistics of the loop
+	private int polled = 0; //poll thread
+	private int dropped = 0; //poll thread, the queue was full
+	private int planned = 0; //game thread
+	private int skipped = 0; //game thread, older ticks that a newer tick replaced
+	private long maxPlanNanos = 0;
+	private long decisionNanos = 0; //from the board to the direction, of all the ticks
+	private long maxDecisionNanos = 0;
+	private int hits = 0; //speculative mode, the guess held
+	private int misses = 0; //the guess did not hold, planned again
+	private int late = 0; //the plan was not ready at the deadline
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public GameLoop(MainWindow window, boolean automatic) {
+		this.window = window;
+		this.play = window.play;
+		this.automatic = automatic;
+		this.speculative = automatic && window.speculative;
+		this.heading = window.azimuth;
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method starts the game thread, that builds the planner, starts the server and the polls,
+	 * and runs parse and plan on every tick until the game ends.
+	 * In the active rendering mode it starts the render thread too (so it is called by the event thread).
+	 */
+	public void start() {
+		snapshot = GameSnapshot.of(window.game, null); //the game thread did not start yet
+		window.myBoard.publish(snapshot);
+		if (window.activeRendering) {
+			render = new RenderLoop(window.myBoard);
+			render.publish(snapshot);
+			render.start();
+		}
+		Thread game = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runGame();
+			}
+		}, "game");
+		game.start();
+	}
+
+	private void runGame() {
+		//build the algorithm before the game starts
+		Planner algo;
+		try {
+			algo = window.plannerType.create(window.game, window.myBoard);
+		} catch (CancellationException e) { //a new game was opened while the graph was built
+			if (!automatic)
+				window.press = Press.NOTHING;
+			stopRender();
+			window.myBoard.publish(null);
+			return;
+		}
+
+		//play music
+		Thread backgroundMusic = new Thread(new SimplePlayer());
+		backgroundMusic.start();
+
+		play.start();
+		window.myBoard.resetFrameTimes();
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread poll = new Thread(task, "poll");
+				poll.setDaemon(true);
+				return poll;
+			}
+		});
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				poll();
+			}
+		}, 0, PERIOD, TimeUnit.MILLISECONDS);
+
+		if (speculative) {
+			planner = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread plan = new Thread(task, "planner");
+					plan.setDaemon(true);
+					return plan;
+				}
+			});
+			prediction = new Prediction(window.myBoard.map.projector, TOLERANCE);
+		}
+
+		try {
+			while (true) {
+				Tick tick = ticks.poll(4*PERIOD, TimeUnit.MILLISECONDS);
+				if (tick == null) {
+					if (finished && ticks.isEmpty())
+						break;
+					continue;
+				}
+				Tick newer;
+				while ((newer = ticks.poll()) != null) { //only the newest board
+					tick = newer;
+					skipped++;
+				}
+				long start = System.nanoTime();
+				parse(tick);
+				if (speculative)
+					speculate(algo, tick.number);
+				else
+					plan(algo);
+				long decision = System.nanoTime() - start;
+				decisionNanos += decision;
+				maxDecisionNanos = Math.max(maxDecisionNanos, decision);
+			}
+		} catch (InterruptedException e) {
+			scheduler.shutdownNow();
+		}
+		if (planner != null)
+			planner.shutdownNow();
+		stopRender();
+		window.myBoard.publish(null); //the game thread does not change the game anymore
+
+		//end of the game
+		if (lastStatistics != null)
+			updateAll(Report.Parse(lastStatistics));
+		if (backgroundMusic.isAlive())
+			backgroundMusic.stop();
+		if (!automatic)
+			window.press = Press.NOTHING;
+		System.out.println("Game loop: " + polled + " polls, " + planned + " plans, " + skipped + " old ticks skipped, "
+				+ dropped + " ticks dropped, the longest plan " + maxPlanNanos/1000000.0 + " ms");
+		int ticks = polled - skipped - dropped;
+		if (ticks > 0)
+			System.out.println("From the board to the direction: " + decisionNanos/1000000.0/ticks + " ms on average, "
+					+ maxDecisionNanos/1000000.0 + " ms the longest");
+		System.out.println("Paint: " + window.myBoard.getFrames() + " paints, static layer " + window.myBoard.getStaticLayerTime()
+				+ " ms, sprites " + window.myBoard.getSpriteLayerTime() + " ms on average");
+		if (speculative)
+			System.out.println("Speculative plans: " + hits + " held, " + misses + " planned again, " + late + " late");
+		if (render != null)
+			System.out.println("Render: " + render.getFrames() + " frames at " + render.getRate() + " Hz, " + render.getAverageFps()
+					+ " fps on average, frame " + render.getFrameTime() + " ms on average, " + render.getMaxFrameTime()
+					+ " ms the longest, " + render.getLateFrames() + " late, " + render.getRepeatedFrames()
+					+ " without a new board, a board is shown " + render.getSnapshotAge() + " ms after parse");
+		window.endGame();
+	}
+
+	/**
+	 * The poll stage (poll thread): sends the newest direction and takes the new tick from the server.
+	 */
+	private void poll() {
+		try {
+			if (!play.isRuning()) {
+				lastStatistics = play.getStatistics();
+				finished = true;
+				scheduler.shutdown();
+				return;
+			}
+			Double command;
+			while ((command = commands.poll()) != null) //only the newest direction
+				heading = command;
+			if (!automatic) //the direction of the last click
+				heading = window.azimuth;
+			play.rotate(heading); //every tick, the server moves the game in rotate
+
+			Tick tick = new Tick(polled, play.getStatistics(), play.getBoard());
+			polled++;
+			if (!ticks.offer(tick)) //the game thread is behind, the next tick has this board too
+				dropped++;
+		} catch (RuntimeException e) { //the scheduler stops silently on an exception
+			e.printStackTrace();
+			finished = true;
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * The parse stage (game thread): the report to the bottom panel, and the board to the game.
+	 */
+	private void parse(Tick tick) {
+		updateAll(Report.Parse(tick.statistics));
+		if (window.applyBoard(tick.board)) { //one sound in a tick
+			Thread eatingSoung = new Thread(new EatingSound());
+			eatingSoung.start();
+		}
+		snapshot = GameSnapshot.of(window.game, snapshot); //the game does not change until the next parse
+		window.myBoard.publish(snapshot);
+		if (render != null)
+			render.publish(snapshot);
+		else
+			window.myBoard.repaintChanged(); //only the sprites that changed, painted by the event thread
+	}
+
+	/**
+	 * The plan stage (game thread): the new direction goes to the poll thread.
+	 */
+	private void plan(Planner algo) {
+		if (!automatic)
+			return;
+		long start = System.nanoTime();
+		algo.refresh(window.game, window.myBoard);
+		window.autoRotate(algo);
+		maxPlanNanos = Math.max(maxPlanNanos, System.nanoTime() - start);
+		planned++;
+		commands.offer(window.azimuth); //full only if the poll thread stopped
+	}
+
+	/**
+	 * The plan stage in the speculative mode (game thread).
+	 * The plan on the guess of this tick is sent if the guess holds, else the planner plans on the board.
+	 * Then the planner starts the plan of the next tick, on the guess.
+	 * A plan that was late and is taken in a later tick was guessed for an older tick, so he is a miss.
+	 * @param number The number of the tick of this board.
+	 */
+	private void speculate(final Planner algo, int number) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEADLINE);
+		boolean decided = false;
+		if (pending != null) {
+			boolean holds = pendingAhead && pendingFor == number && prediction.holds(window.game);
+			Double next = await(deadline);
+			if (pending != null) //still working, this tick keeps the last direction
+				late++;
+			else if (holds) {
+				decided = decide(next);
+				hits++;
+			}
+			else
+				misses++;
+		}
+		if (pending == null && !decided) { //plan on the real board
+			prediction.copy(window.game, false);
+			submit(algo, false, number);
+			Double next = await(deadline);
+			if (pending == null)
+				decided = decide(next);
+			else
+				late++;
+		}
+		window.unstuck();
+		commands.offer(window.azimuth);
+
+		//the plan of the next tick, while the poll thread takes his board
+		if (pending == null) {
+			prediction.copy(window.game, true);
+			submit(algo, true, number + 1);
+		}
+		prediction.remember(window.game);
+	}
+
+	//starts a plan on the state of the prediction, the game thread does not change the state until the plan is done
+	private void submit(final Planner algo, boolean ahead, int number) {
+		final AllObjects state = prediction.state;
+		pending = planner.submit(new Callable<Plan>() {
+			@Override
+			public Plan call() {
+				long start = System.nanoTime();
+				algo.refresh(state, window.myBoard);
+				double next = window.direction(algo, state);
+				return new Plan(next, System.nanoTime() - start); //the statistics are updated by the game thread
+			}
+		});
+		pendingAhead = ahead;
+		pendingFor = number;
+	}
+
+	/**
+	 * This method waits for the pending plan until the deadline.
+	 * @return The direction of the plan (NaN if there is nothing to do), or null if the plan is not ready,
+	 * then it is still pending.
+	 */
+	private Double await(long deadline) throws InterruptedException {
+		try {
+			Plan plan = pending.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			pending = null;
+			maxPlanNanos = Math.max(maxPlanNanos, plan.nanos);
+			return plan.direction;
+		} catch (TimeoutException e) {
+			return null;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			pending = null;
+			return Double.NaN;
+		}
+	}
+
+	//the direction of the plan is the new direction of the player
+	private boolean decide(Double next) {
+		if (!Double.isNaN(next))
+			window.azimuth = next;
+		planned++;
+		return true;
+	}
+
+	//stops the render thread, the event thread paints the board again
+	private void stopRender() {
+		if (render == null)
+			return;
+		try {
+			render.stop();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//This function updates data in the bottom panel
+	private void updateAll(Report report) {
+		Runnable updater = new LabelUpdater(window.bottom.killByGhosts, "Kill By Ghosts: "+report.getKillByGhosts());
+		EventQueue.invokeLater(updater);
+
+		updater = new LabelUpdater(window.bottom.score, "    Score: "+report.getScore());
+		EventQueue.invokeLater(updater);
+
+		updater = new LabelUpdater(window.bottom.outOfBox," Out Of Box: "+report.getOutOfBox());
+		EventQueue.invokeLater(updater);
+
+		updater = new LabelUpdater(window.bottom.timeLeft, "Time Left: "+report.getTimeLeft());
+		EventQueue.invokeLater(updater);
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * What the poll thread took from the server in one tick.
+	 */
+	private static class Tick {
+
+		final int number; //the polls before him, so a skipped or dropped tick leaves a gap
+		final String statistics;
+		final ArrayList<String> board;
+
+		Tick(int number, String statistics, ArrayList<String> board) {
+			this.number = number;
+			this.statistics = statistics;
+			this.board = board;
+		}
+	}
+
+	/**
+	 * What the planner thread returns: the direction, and the time of the plan for the statistics of the game thread.
+	 */
+	private static class Plan {
+
+		final double direction; //NaN if there is nothing to do
+		final long nanos;
+
+		Plan(double direction, long nanos) {
+			this.direction = direction;
+			this.nanos = nanos;
+		}
+	}
+
+}
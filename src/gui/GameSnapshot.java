@@ -0,0 +1,127 @@
+package gui;
+
+import GeoObjects.AllObjects;
+import GeoObjects.Box;
+import GeoObjects.Fruit;
+import GeoObjects.ObjectTable;
+import GeoObjects.Player;
+import GeoObjects.Point3D;
+
+/**
+ * This class is a copy of what is drawn on the board in one moment: the boxes, the fruits,
+ * the packmans, the ghosts and the player, in primitive arrays.
+ * A snapshot never changes after it was made, so the event thread and the render thread can draw it
+ * while the game thread applies the next board to the game (see {@link PanelBoard#publish(GameSnapshot)}).
+ *
+ * The fruits and the boxes change much less than the sprites, so a new snapshot uses the same
+ * arrays of the previous snapshot when they did not change (see {@link #of(AllObjects, GameSnapshot)}),
+ * and a renderer knows that the fruits did not change when it is the same {@link Fruits} object.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public final class GameSnapshot {
+
+	final AllObjects source; //only to know that it is the same game, never read after the snapshot was made
+	final Box[] boxes;
+	final Fruits fruits;
+	final double[] packmanLat, packmanLon;
+	final double[] ghostLat, ghostLon;
+	final boolean hasPlayer;
+	final double playerLat, playerLon;
+	final long time; //System.nanoTime when the snapshot was made
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	private GameSnapshot(AllObjects game, GameSnapshot previous) {
+		source = game;
+		if (previous != null && previous.source == game && previous.boxes.length == game.boxes.size())
+			boxes = previous.boxes; //the boxes do not move
+		else
+			boxes = game.boxes.toArray(new Box[0]);
+		if (previous != null && previous.source == game && previous.fruits.version == game.fruits.getModifications())
+			fruits = previous.fruits;
+		else
+			fruits = new Fruits(game.fruits);
+
+		packmanLat = new double[game.packmans.size()];
+		packmanLon = new double[game.packmans.size()];
+		copy(game.packmans, packmanLat, packmanLon);
+		ghostLat = new double[game.ghosts.size()];
+		ghostLon = new double[game.ghosts.size()];
+		copy(game.ghosts, ghostLat, ghostLon);
+
+		Player player = game.player;
+		Point3D location = player == null ? null : player.getLocation();
+		hasPlayer = location != null;
+		playerLat = hasPlayer ? location.x() : 0;
+		playerLon = hasPlayer ? location.y() : 0;
+		time = System.nanoTime();
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method makes a snapshot of the game. It must be called by the thread that changes the game:
+	 * the game thread while a game runs (then the snapshot is the game between two boards),
+	 * or the event thread when no game runs. The tables are not safe to read from other thread.
+	 * @param game The game, can be null.
+	 * @param previous The last snapshot, his arrays that did not change are used again. Can be null.
+	 * @return The snapshot, or null if there is no game.
+	 */
+	public static GameSnapshot of(AllObjects game, GameSnapshot previous) {
+		return game == null ? null : new GameSnapshot(game, previous);
+	}
+
+	//copies the locations to the arrays, in the order of the slots
+	private static void copy(ObjectTable<?> table, double[] lat, double[] lon) {
+		int i = 0;
+		for (int slot=table.first(); slot>=0; slot=table.next(slot), i++) {
+			lat[i] = table.getLat(slot);
+			lon[i] = table.getLon(slot);
+		}
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public int getPackmans() {
+		return packmanLat.length;
+	}
+
+	public int getGhosts() {
+		return ghostLat.length;
+	}
+
+	public int getFruits() {
+		return fruits.lat.length;
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * The fruits of a snapshot, by the slots of the fruits table of the game
+	 * (the slot of a fruit does not change until he is eaten).
+	 */
+	static final class Fruits {
+
+		final int version; //the modifications of the fruits table
+		final int[] slots;
+		final double[] lat, lon;
+		final int[] images;
+
+		private Fruits(ObjectTable<Fruit> table) {
+			version = table.getModifications();
+			slots = new int[table.size()];
+			lat = new double[table.size()];
+			lon = new double[table.size()];
+			images = new int[table.size()];
+			copy(table, lat, lon);
+			int i = 0;
+			for (int slot=table.first(); slot>=0; slot=table.next(slot), i++) {
+				slots[i] = slot;
+				images[i] = table.get(slot).getRandImage();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package gui;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is a bounded queue between two threads: one thread only offers, and one thread only polls.
+ * The items are in a ring array with two counters, and every counter is written by one thread only,
+ * so there are no locks: the volatile tail publishes the item to the consumer,
+ * and the volatile head gives the place back to the producer.
+ * A full queue does not block the producer, offer returns false and the producer decides what to do
+ * (in the game loop a newer board replaces the old one anyway).
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class HandoffQueue<T> {
+
+	private final Object[] items;
+	private final int mask;
+	private volatile long head = 0; //the next item to poll, written only by the consumer
+	private volatile long tail = 0; //the next place to offer, written only by the producer
+	private volatile Thread waiting; //the consumer, while he waits for an item
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	/**
+	 * @param capacity The number of items in the queue, rounded up to a power of two.
+	 */
+	public HandoffQueue(int capacity) {
+		int length = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		items = new Object[length];
+		mask = length - 1;
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method adds the item to the queue (only the producer thread).
+	 * @return False if the queue is full, the item was not added.
+	 */
+	public boolean offer(T item) {
+		long t = tail;
+		if (t - head == items.length)
+			return false;
+		items[(int)t & mask] = item;
+		tail = t + 1;
+		Thread consumer = waiting;
+		if (consumer != null)
+			LockSupport.unpark(consumer);
+		return true;
+	}
+
+	/**
+	 * This method takes the first item (only the consumer thread).
+	 * @return The item, or null if the queue is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		long h = head;
+		if (h == tail)
+			return null;
+		int i = (int)h & mask;
+		T item = (T)items[i];
+		items[i] = null;
+		head = h + 1;
+		return item;
+	}
+
+	/**
+	 * This method takes the first item, and waits for one if the queue is empty (only the consumer thread).
+	 * @return The item, or null if there was no item until the timeout.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		T item = poll();
+		if (item != null)
+			return item;
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		waiting = Thread.currentThread(); //set before checking again, so an offer after the check unparks him
+		try {
+			while ((item = poll()) == null) {
+				long left = deadline - System.nanoTime();
+				if (left <= 0)
+					return null;
+				LockSupport.parkNanos(this, left);
+				if (Thread.interrupted())
+					throw new InterruptedException();
+			}
+			return item;
+		} finally {
+			waiting = null;
+		}
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public int size() {
+		return (int)(tail - head);
+	}
+
+	public boolean isEmpty() {
+		return tail == head;
+	}
+
+	public int capacity() {
+		return items.length;
+	}
+
+}
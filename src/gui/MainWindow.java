@@ -1,7 +1,6 @@
 package gui;
 
 import java.awt.Color;
-import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Menu;
@@ -17,37 +16,39 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.CancellationException;
 
 import javax.imageio.ImageIO;
+import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.UIManager;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-import Coords.MyCoords;
 import GeoObjects.AllObjects;
 import GeoObjects.Fruit;
 import GeoObjects.Packman;
 import GeoObjects.Point3D;
 import Robot.Play;
+import algorithm.Planner;
+import algorithm.PlannerType;
 import algorithm.Shortest;
-import audio.EatingSound;
-import audio.SimplePlayer;
 import convertor.Csv2Game;
-import convertor.Data2Game;
+import convertor.BoardUpdater;
+import convertor.ScenarioFile;
 import gameData.FilterOption;
-import gameData.Report;
 import gameData.SQLPull;
 import gameData.SystemPrinter;
 import guiObjects.Pixel;
 import guiObjects.Line;
 import guiObjects.Map;
-import guiObjects.Path;
 
 /**
  * This class is the main window of the GUI.
@@ -63,15 +64,28 @@ public class MainWindow extends JFrame
 	public PanelBottom bottom;
 	public AllObjects game;
 	public Press press = Press.NOTHING;
+	public PlannerType plannerType = PlannerType.CORNERS;
+	public boolean speculative = false; //plan on the guess of the next tick, while the server is polled (see GameLoop)
+	public boolean activeRendering = false; //the board is drawn by a render thread at the refresh rate (see RenderLoop)
 	public Play play;
 	public File file;
 	
-	double azimuth = 0;
+	volatile double azimuth = 0; //sent to the server by the poll thread of GameLoop
 	Point3D lastLocation = null;
-	int lastNumObjects = 0;
 
 	private Csv2Game convertor = new Csv2Game();
-	private Data2Game dataConvertor = new Data2Game();
+	private boolean eaten = false; //something was eaten in the last board
+	private BoardUpdater boardUpdater = new BoardUpdater(new BoardUpdater.Adapter() { //the board of the server is applied to game, by ids
+		@Override
+		public void fruitEaten(Fruit fruit) {
+			eaten = true;
+		}
+
+		@Override
+		public void packmanEaten(Packman packman) {
+			eaten = true;
+		}
+	});
 
 ////////////////////////////////*******************///////////////////////////////////
 ///////////////////////////////***Constructors****///////////////////////////////////
@@ -114,8 +128,18 @@ public class MainWindow extends JFrame
 			}
 		});
 
+		//save the objects and the graph, so the next time this scenario is opened they are not computed again
+		JMenuItem  compile = new JMenuItem ("Compile Scenario");
+		compile.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				compileScenario();
+			}
+		});
+
 		newGame.add(importGame);
 		newGame.add(tryAgain);
+		newGame.add(compile);
 		menuBar.add(newGame);
 
 		//start menu
@@ -143,8 +167,67 @@ public class MainWindow extends JFrame
 			}
 		});
 
+		//the algorithm of the automatic game
+		JMenu algorithm = new JMenu("Algorithm");
+		ButtonGroup algorithms = new ButtonGroup();
+		JRadioButtonMenuItem corners = new JRadioButtonMenuItem("Closest fruit", true);
+		corners.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				plannerType = PlannerType.CORNERS;
+			}
+		});
+		JRadioButtonMenuItem tour = new JRadioButtonMenuItem("Tour planning");
+		tour.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				plannerType = PlannerType.TOUR;
+			}
+		});
+		JRadioButtonMenuItem flowField = new JRadioButtonMenuItem("Flow field");
+		flowField.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				plannerType = PlannerType.FLOW_FIELD;
+			}
+		});
+		algorithms.add(corners);
+		algorithms.add(tour);
+		algorithms.add(flowField);
+		algorithm.add(corners);
+		algorithm.add(tour);
+		algorithm.add(flowField);
+
+		//plan the next tick before his board comes
+		final JCheckBoxMenuItem speculation = new JCheckBoxMenuItem("Speculative planning");
+		speculation.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				speculative = speculation.isSelected();
+			}
+		});
+		algorithm.addSeparator();
+		algorithm.add(speculation);
+
+		//draw the board in a render thread, not by repaint
+		final JCheckBoxMenuItem rendering = new JCheckBoxMenuItem("Active rendering");
+		rendering.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				activeRendering = rendering.isSelected();
+			}
+		});
+
 		start.add(manual);
 		start.add(auto);
+		start.add(algorithm);
+		start.addSeparator();
+		start.add(rendering);
 		menuBar.add(start);
 
 		
@@ -222,14 +305,47 @@ public class MainWindow extends JFrame
 	private void newGame() {
 		if (file == null)
 			return;
+		Shortest.cancelBuilds(); //the graph of the old game is not needed any more
 		play = new Play(file.getAbsolutePath());
 		play.setIDs(204533632, 206284267);
-		game = convertor.convert(file);
+		game = loadGame();
 		myBoard.setBounding(play.getBoundingBox());
 		myBoard.repaintMe();
-		lastNumObjects = game.getNumOfFriutsAndPackmans();
 	}
 	
+	/**
+	 * This method reads the game from the compiled file of the scenario if there is a valid one
+	 * (and puts his graph in the cache), else from the csv file.
+	 * @return The game.
+	 */
+	private AllObjects loadGame() {
+		if (ScenarioFile.compiledFile(file).exists()) {
+			try {
+				ScenarioFile.Scenario scenario = ScenarioFile.read(file);
+				scenario.seed(myBoard);
+				return scenario.game;
+			} catch (IOException e) { //old or broken compiled file, the csv is used
+				System.out.println(e.getMessage());
+			}
+		}
+		return convertor.convert(file);
+	}
+
+	/**
+	 * This method writes the compiled file of the current scenario, with the graph for the current board size.
+	 */
+	private void compileScenario() {
+		if (file == null)
+			return;
+		try {
+			AllObjects scenario = convertor.convert(file); //the objects at the start, not of the current game
+			Shortest algo = new Shortest(scenario, myBoard);
+			ScenarioFile.write(file, scenario, algo, myBoard.getWidth(), myBoard.getHeight());
+		} catch (IOException | CancellationException e) {
+			System.out.println("The scenario was not compiled: " + e.toString());
+		}
+	}
+
 	/**
 	 * This method responsible for starting the game.
 	 * 
@@ -237,74 +353,18 @@ public class MainWindow extends JFrame
 	public void startGame(boolean automatic) {
 		if (!automatic)
 			press = Press.GO;
-		Thread startAutoGame = new Thread(new Runnable() {
-
-			@Override
-			public void run() {
-				//play music
-				Thread backgroundMusic = new Thread(new SimplePlayer());
-				backgroundMusic.start();
-
-				play.start();
-
-				Shortest algo = new Shortest(game, myBoard);
-				while (play.isRuning()) {
-					algo.refresh(game, myBoard);
-
-					//refresh the bottom menu!
-					Report report = Report.Parse(play.getStatistics());
-					updateAll(report);
-
-					ArrayList<String> board_data = play.getBoard();
-					game = dataConvertor.convert(board_data);
-					play.rotate(azimuth);
-					myBoard.repaintMe();
-
-					if (lastNumObjects > game.getNumOfFriutsAndPackmans()) {
-						Thread eatingSoung = new Thread(new EatingSound());
-						eatingSoung.start();
-					}
-					lastNumObjects = game.getNumOfFriutsAndPackmans();
-
-					//find new azimuth
-					if (automatic)
-						autoRotate(algo);
-
-					try {
-						Thread.sleep(30);
-					} catch (InterruptedException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-					}					
-				}
-
-				//end of the game
-				Report report = Report.Parse(play.getStatistics());
-				updateAll(report);
-
-				if (backgroundMusic.isAlive())
-					backgroundMusic.stop();
-				if (!automatic)
-					press = Press.NOTHING;
-				endGame();
-			}
-
-			//This function updates data in the bottom panel
-			private void updateAll(Report report) {
-				Runnable updater = new LabelUpdater(bottom.killByGhosts, "Kill By Ghosts: "+report.getKillByGhosts());
-				EventQueue.invokeLater(updater);
-
-				updater = new LabelUpdater(bottom.score, "    Score: "+report.getScore());
-				EventQueue.invokeLater(updater);
-
-				updater = new LabelUpdater(bottom.outOfBox," Out Of Box: "+report.getOutOfBox());
-				EventQueue.invokeLater(updater);
+		new GameLoop(this, automatic).start();
+	}
 
-				updater = new LabelUpdater(bottom.timeLeft, "Time Left: "+report.getTimeLeft());
-				EventQueue.invokeLater(updater);
-			}
-		});
-		startAutoGame.start();
+	/**
+	 * This method applies the board of the server to the game (in the game thread of {@link GameLoop}).
+	 * @param board_data The rows of the board.
+	 * @return True if something was eaten in this board.
+	 */
+	boolean applyBoard(ArrayList<String> board_data) {
+		eaten = false;
+		boardUpdater.apply(board_data, game);
+		return eaten;
 	}
 	
 	/**
@@ -335,15 +395,34 @@ public class MainWindow extends JFrame
 	 * This method responsible for choose a new direction for the player,
 	 * using the algorithm. 
 	 */
-	private void autoRotate(Shortest algo) {
-		if (game.player != null && !game.fruits.isEmpty()) {
-			Pixel playerPixelLocation = myBoard.map.gps2pixel(game.player.getLocation(), myBoard.getWidth(), myBoard.getHeight());
+	void autoRotate(Planner algo) {
+		double next = direction(algo, game);
+		if (!Double.isNaN(next))
+			azimuth = next; //refresh the azimuth
+		unstuck();
+	}
+
+	/**
+	 * This method calculates the direction from the player to the next pixel of the algorithm.
+	 * @param algo The algorithm, after refresh with this game.
+	 * @param state The game (the current one, or the guess of the next tick).
+	 * @return The azimuth, or NaN if there is nothing to do.
+	 */
+	double direction(Planner algo, AllObjects state) {
+		if (state.player != null && !state.fruits.isEmpty()) {
+			Pixel playerPixelLocation = myBoard.map.gps2pixel(state.player.getLocation(), myBoard.getWidth(), myBoard.getHeight());
 			Pixel nextPixel = algo.findPath(playerPixelLocation); //calculate what is the next target (in pixels)
-			if (nextPixel != null) {
-				azimuth = myBoard.mc.azimuth(game.player.getLocation(), //refresh the azimuth
+			if (nextPixel != null)
+				return myBoard.map.projector.azimuth(state.player.getLocation(),
 						myBoard.map.pixel2gps(nextPixel, myBoard.getWidth(), myBoard.getHeight()));
-			}
 		}
+		return Double.NaN;
+	}
+
+	/**
+	 * This method turns the player to another direction if he did not move from the last tick.
+	 */
+	void unstuck() {
 		if (game.player != null && lastLocation.equals(game.player.getLocation())) {
 			azimuth += 90*(int)(Math.random()*3+1); //if the player stack go to another location
 		}
@@ -1,17 +1,21 @@
 package gui;
 
-import java.awt.Color;
+import java.awt.EventQueue;
 import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 
-import Coords.MyCoords;
 import GeoObjects.Fruit;
 import GeoObjects.GenericGeoObject;
 import GeoObjects.Ghost;
@@ -20,9 +24,12 @@ import GeoObjects.Box;
 import GeoObjects.Packman;
 import GeoObjects.Player;
 import GeoObjects.Point3D;
+import algorithm.Shortest;
+import guiObjects.DirtyRegions;
 import guiObjects.Line;
 import guiObjects.Map;
 import guiObjects.Pixel;
+import guiObjects.PixelBuffer;
 /**
  * This class is the Panel Board of main window for the GUI.
  * This panel contains all the map elements to show for the user.
@@ -36,11 +43,27 @@ public class PanelBoard extends JPanel implements MouseListener {
 	public Map map;
 	public Box bounding;
 
-	private BufferedImage[] fruitsImages;
-	private BufferedImage packmanImage;
-	private BufferedImage ghostImage;
-	private BufferedImage playerImage;
-	public MyCoords mc = new MyCoords();
+	BufferedImage[] fruitsImages;
+	BufferedImage packmanImage;
+	BufferedImage ghostImage;
+	BufferedImage playerImage;
+
+	//the places that changed since the last paint (see repaintChanged), all locked by dirty
+	private static final int MAX_DIRTY = 8;
+	private final DirtyRegions dirty = new DirtyRegions(MAX_DIRTY);
+	private final PixelBuffer changed = new PixelBuffer(); //the pixels of repaintChanged, not the ones of paint (other thread)
+	private final Sprites fruitSprites = new Sprites();
+	private final Sprites packmanSprites = new Sprites();
+	private final Sprites ghostSprites = new Sprites();
+	private final Sprites playerSprite = new Sprites();
+	private int spritesWidth, spritesHeight; //the size of the panel of the sprites
+	private boolean paintPending = false; //paintDirty is in the event queue
+	private final Rectangle[] painting = new Rectangle[MAX_DIRTY]; //the rectangles of paintDirty
+
+	//the layers of paint, only the event thread uses them
+	private final BoardRenderer renderer = new BoardRenderer(this);
+	private GameSnapshot snapshot; //of the last paint, his fruits and boxes are used again while they do not change
+	private volatile GameSnapshot published; //made by the game thread of the running game (see publish), else null
 
 	////////////////////////***Constructor****///////////////////////////////////////////
 
@@ -60,6 +83,17 @@ public class PanelBoard extends JPanel implements MouseListener {
 			System.out.println(exc.toString());
 		}
 		this.addMouseListener(this);
+		for (int i=0; i<MAX_DIRTY; i++) {
+			painting[i] = new Rectangle();
+		}
+
+		//the corners graph is in pixels, so it is not valid anymore after resize
+		this.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(ComponentEvent e) {
+				Shortest.graphCache.invalidate();
+			}
+		});
 	}
 
 	///////////////////////////*** Methods ***//////////////////////////////////////////
@@ -67,50 +101,30 @@ public class PanelBoard extends JPanel implements MouseListener {
 
 	/////////////////////////////****Painting the map***///////////////////////////////////////
 
+	/**
+	 * The board is painted by the {@link BoardRenderer} in two layers: the map, the boxes and the fruits
+	 * in one cached image, and the sprites on it.
+	 * While a game runs the game thread changes the game, so the paint draws only the {@link GameSnapshot}
+	 * that the game thread published. Without a running game the event thread takes the snapshot himself.
+	 */
 	public void paint(Graphics g)
 	{
 		//		this.setSize(window.getWidth()-16, window.getHeight()-59); //check this numbers!!
 		this.setSize(window.getWidth()-16, window.getHeight()-90); //check this numbers!!
-
-		//draw background
-		g.drawImage(map.myImage,0, 0, this.getWidth(), this.getHeight(), this);
-
-		if (window.game == null)
-			return;
-
-		//draw boxes
-		g.setColor(Color.BLACK);
-		for (Box box: window.game.boxes) {
-			Pixel nw = box.getPixelNw(this);
-			int width = map.gps2pixel(box.getNe(), this.getWidth(), this.getHeight()).x() - nw.x();
-			int hight = map.gps2pixel(box.getSw(), this.getWidth(), this.getHeight()).y() - nw.y();
-			g.fillRect(nw.x(), nw.y(), width, hight);
-		}
-
-		//draw fruits
-		for (Fruit fruit: window.game.fruits) {
-			Pixel pixel = map.gps2pixel(fruit.getLocation(), this.getWidth(), this.getHeight());
-			g.drawImage(fruitsImages[fruit.getRandImage()], pixel.x() - fruitsImages[fruit.getRandImage()].getWidth()/2, pixel.y() - fruitsImages[fruit.getRandImage()].getHeight()/2, this);
-		}
-
-		//draw packmans
-		for (Packman packman: window.game.packmans) {
-			Pixel pixel = map.gps2pixel(packman.getLocation(), this.getWidth(), this.getHeight());
-			g.drawImage(packmanImage, pixel.x() - packmanImage.getWidth()/2, pixel.y() - packmanImage.getHeight()/2, this);
+		GameSnapshot snapshot = published;
+		if (snapshot == null) { //no game runs, nobody else changes the game
+			snapshot = GameSnapshot.of(window.game, this.snapshot);
+			this.snapshot = snapshot;
 		}
+		renderer.render(g, snapshot, this.getWidth(), this.getHeight());
+	}
 
-		//draw ghosts
-		for (Ghost ghost: window.game.ghosts) {
-			Pixel pixel = map.gps2pixel(ghost.getLocation(), this.getWidth(), this.getHeight());
-			g.drawImage(ghostImage, pixel.x() - ghostImage.getWidth()/2, pixel.y() - ghostImage.getHeight()/2, this);
-		}
-
-		//draw player
-		if (window.game.player != null) {
-			Pixel pixel = map.gps2pixel(window.game.player.getLocation(), this.getWidth(), this.getHeight());
-			g.drawImage(playerImage, pixel.x() - playerImage.getWidth()/2, pixel.y() - playerImage.getHeight()/2, this);
-		}		
-
+	/**
+	 * This method gives the panel the newest snapshot of the running game (the game thread, after every board).
+	 * @param snapshot The snapshot, or null when the game ended, then the paint takes his own snapshots again.
+	 */
+	public void publish(GameSnapshot snapshot) {
+		published = snapshot;
 	}
 
 	@Override
@@ -133,9 +147,8 @@ public class PanelBoard extends JPanel implements MouseListener {
 
 		case GO:
 			Point3D pointToGo = map.pixel2gps(new Pixel(e.getX(),  e.getY()), this.getWidth(), this.getHeight());
-			double azimuth = mc.azimuth(window.game.player.getLocation(), pointToGo);
-			window.azimuth = azimuth;
-			window.play.rotate(azimuth);
+			double azimuth = map.projector.azimuth(window.game.player.getLocation(), pointToGo);
+			window.azimuth = azimuth; //the poll thread of the game sends it in the next tick
 			break;
 
 		default: //NOTHING
@@ -162,6 +175,76 @@ public class PanelBoard extends JPanel implements MouseListener {
 		paintImmediately(0, 0, this.getWidth(), this.getHeight());
 	}
 
+	/**
+	 * This method paints again only the places of the sprites that moved, were added or were removed
+	 * since the last call: the old and the new rectangle of every sprite that changed (the background and the boxes
+	 * do not change). It can be called from the game thread, the places are painted by the event thread,
+	 * and the changes of some calls before the paint are painted together.
+	 */
+	public void repaintChanged() {
+		AllObjects game = window.game;
+		int width = this.getWidth();
+		int height = this.getHeight();
+		if (game == null || width <= 0 || height <= 0)
+			return;
+		synchronized (dirty) {
+			if (width != spritesWidth || height != spritesHeight) { //resized, all the pixels changed
+				spritesWidth = width;
+				spritesHeight = height;
+				fruitSprites.clear();
+				packmanSprites.clear();
+				ghostSprites.clear();
+				playerSprite.clear();
+				dirty.clear();
+				dirty.add(0, 0, width, height);
+			}
+
+			changed.project(game.fruits, map, width, height);
+			int i = 0;
+			for (int slot=game.fruits.first(); slot>=0 && i<changed.size(); slot=game.fruits.next(slot), i++)
+				fruitSprites.place(slot, fruitsImages[game.fruits.get(slot).getRandImage()], changed.x[i], changed.y[i], dirty);
+			fruitSprites.removeOthers(dirty);
+
+			changed.project(game.packmans, map, width, height);
+			i = 0;
+			for (int slot=game.packmans.first(); slot>=0 && i<changed.size(); slot=game.packmans.next(slot), i++)
+				packmanSprites.place(slot, packmanImage, changed.x[i], changed.y[i], dirty);
+			packmanSprites.removeOthers(dirty);
+
+			changed.project(game.ghosts, map, width, height);
+			i = 0;
+			for (int slot=game.ghosts.first(); slot>=0 && i<changed.size(); slot=game.ghosts.next(slot), i++)
+				ghostSprites.place(slot, ghostImage, changed.x[i], changed.y[i], dirty);
+			ghostSprites.removeOthers(dirty);
+
+			Player player = game.player;
+			if (player != null) {
+				Pixel pixel = map.gps2pixel(player.getLocation(), width, height);
+				playerSprite.place(0, playerImage, pixel.x(), pixel.y(), dirty);
+			}
+			playerSprite.removeOthers(dirty);
+
+			if (!dirty.isEmpty() && !paintPending) {
+				paintPending = true;
+				EventQueue.invokeLater(paintDirty);
+			}
+		}
+	}
+
+	//paints the rectangles of repaintChanged, in the event thread
+	private final Runnable paintDirty = new Runnable() {
+		@Override
+		public void run() {
+			int count;
+			synchronized (dirty) {
+				count = dirty.drain(painting);
+				paintPending = false;
+			}
+			for (int i=0; i<count; i++)
+				paintImmediately(painting[i]);
+		}
+	};
+
 	/**
 	 * This method set the bounding for the panel according to the map data
 	 * that he gets.
@@ -177,4 +260,87 @@ public class PanelBoard extends JPanel implements MouseListener {
 		bounding = new Box(point1, (int)Double.parseDouble(csvRow[1]), point2, 0.0, 0.0);
 	}
 
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	// the average time of the static layer in a paint (made again, repaired and copied), in milliseconds.
+	public double getStaticLayerTime() {
+		return renderer.getStaticLayerTime();
+	}
+
+	// the average time of the sprites layer in a paint, in milliseconds.
+	public double getSpriteLayerTime() {
+		return renderer.getSpriteLayerTime();
+	}
+
+	// how many paints since the last reset.
+	public int getFrames() {
+		return renderer.getFrames();
+	}
+
+	// how many times the static layer was made from the start.
+	public int getLayerBuilds() {
+		return renderer.getLayerBuilds();
+	}
+
+	public void resetFrameTimes() {
+		renderer.resetFrameTimes();
+	}
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * The rectangles that the sprites of one kind are painted in, by the slots of their table.
+	 */
+	static class Sprites {
+
+		private int[] x = new int[16];
+		private int[] y = new int[16];
+		private int[] width = new int[16];
+		private int[] height = new int[16];
+		private final BitSet shown = new BitSet(); //the slots that have a rectangle
+		private final BitSet placed = new BitSet(); //the slots that were placed since removeOthers
+
+		//the sprite of the slot is now in the center of the pixel, his old and new rectangles are dirty if he moved
+		void place(int slot, BufferedImage image, int px, int py, DirtyRegions dirty) {
+			if (image == null)
+				return;
+			if (slot >= x.length) {
+				int length = Math.max(slot+1, 2*x.length);
+				x = Arrays.copyOf(x, length);
+				y = Arrays.copyOf(y, length);
+				width = Arrays.copyOf(width, length);
+				height = Arrays.copyOf(height, length);
+			}
+			int left = px - image.getWidth()/2;
+			int top = py - image.getHeight()/2;
+			placed.set(slot);
+			if (shown.get(slot)) {
+				if (x[slot] == left && y[slot] == top && width[slot] == image.getWidth() && height[slot] == image.getHeight())
+					return;
+				dirty.add(x[slot], y[slot], width[slot], height[slot]);
+			}
+			x[slot] = left;
+			y[slot] = top;
+			width[slot] = image.getWidth();
+			height[slot] = image.getHeight();
+			shown.set(slot);
+			dirty.add(left, top, width[slot], height[slot]);
+		}
+
+		//the sprites that were not placed since the last time are gone, their rectangles are dirty
+		void removeOthers(DirtyRegions dirty) {
+			for (int slot=shown.nextSetBit(0); slot>=0; slot=shown.nextSetBit(slot+1))
+				if (!placed.get(slot)) {
+					dirty.add(x[slot], y[slot], width[slot], height[slot]);
+					shown.clear(slot);
+				}
+			placed.clear();
+		}
+
+		void clear() {
+			shown.clear();
+			placed.clear();
+		}
+	}
+
 }
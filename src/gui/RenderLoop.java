@@ -0,0 +1,235 @@
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.Canvas;
+import java.awt.DisplayMode;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class draws the board actively, in his own thread at the refresh rate of the display,
+ * instead of the event thread painting the board when the game thread asks (repaint).
+ *
+ * A {@link Canvas} is put over the board, and every frame is drawn in the back buffer of his {@link BufferStrategy}
+ * (an accelerated image, a VolatileImage on most screens) and shown in one flip or copy.
+ * The game thread only publishes an immutable {@link GameSnapshot} after every board, and the render thread
+ * draws the newest one, so the frames do not wait for the polls or for the planner,
+ * and the renderer never reads the game while the game thread changes it.
+ *
+ * The loop keeps his own statistics: the frames per second, the time to draw a frame,
+ * the frames that took more than the period of the display, and how old the snapshot was when it was shown.
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class RenderLoop {
+
+	public static final int DEFAULT_RATE = 60; //frames per second, if the display does not tell his refresh rate
+	private static final int BUFFERS = 2;
+
+	private final PanelBoard board;
+	private final Canvas canvas = new Canvas();
+	private final BoardRenderer renderer; //only the render thread uses him
+	private BufferStrategy strategy;
+	private long period; //nanoseconds between two frames
+	private Thread thread;
+	private volatile boolean running = false;
+	private volatile GameSnapshot latest; //the newest snapshot of the game thread
+
+	//statistics, written by the render thread
+	private int frames = 0;
+	private int late = 0; //the frame took more than the period
+	private int repeated = 0; //no new snapshot since the last frame
+	private long frameNanos = 0, maxFrameNanos = 0;
+	private long ageNanos = 0; //from the snapshot to the frame that shows it, of the new snapshots
+	private long startNanos, endNanos;
+	private volatile double fps = 0; //of the last second
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	public RenderLoop(PanelBoard board) {
+		this.board = board;
+		this.renderer = new BoardRenderer(board);
+		canvas.setIgnoreRepaint(true); //only the render thread draws him
+		canvas.addMouseListener(board); //the canvas is in the place of the board, so the pixels of the clicks are the same
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method puts the canvas over the board and starts the render thread (only the event thread,
+	 * the board must be on the screen).
+	 */
+	public void start() {
+		attach();
+		running = true;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runFrames();
+			}
+		}, "render");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * This method stops the render thread and waits for him, and then gives the board back to the event thread.
+	 */
+	public void stop() throws InterruptedException {
+		running = false;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			thread.join();
+		}
+		endNanos = System.nanoTime();
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				detach();
+			}
+		});
+	}
+
+	/**
+	 * This method gives a new snapshot to the render thread, he draws it in the next frame
+	 * (only the newest snapshot is drawn, an older one that was not drawn yet is skipped).
+	 */
+	public void publish(GameSnapshot snapshot) {
+		latest = snapshot;
+	}
+
+	void attach() {
+		board.setLayout(new BorderLayout());
+		board.add(canvas, BorderLayout.CENTER);
+		board.validate();
+		canvas.createBufferStrategy(BUFFERS);
+		strategy = canvas.getBufferStrategy();
+		period = 1000000000L / refreshRate(canvas.getGraphicsConfiguration());
+	}
+
+	void detach() {
+		board.remove(canvas);
+		board.repaint(); //the event thread paints the board again
+	}
+
+	//the refresh rate of the display of the canvas
+	private static int refreshRate(GraphicsConfiguration configuration) {
+		if (configuration == null)
+			return DEFAULT_RATE;
+		int rate = configuration.getDevice().getDisplayMode().getRefreshRate();
+		return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_RATE : rate;
+	}
+
+	//the loop of the render thread: a frame, and sleep until the time of the next one
+	private void runFrames() {
+		GameSnapshot shown = null;
+		startNanos = System.nanoTime();
+		long next = startNanos;
+		long second = startNanos;
+		int secondFrames = 0;
+		while (running) {
+			long start = System.nanoTime();
+			GameSnapshot snapshot = latest;
+			draw(snapshot);
+			long end = System.nanoTime();
+
+			long frame = end - start;
+			frames++;
+			frameNanos += frame;
+			maxFrameNanos = Math.max(maxFrameNanos, frame);
+			if (snapshot == shown)
+				repeated++;
+			else if (snapshot != null)
+				ageNanos += end - snapshot.time;
+			shown = snapshot;
+			secondFrames++;
+			if (end - second >= 1000000000L) {
+				fps = secondFrames * 1000000000.0 / (end - second);
+				second = end;
+				secondFrames = 0;
+			}
+
+			next += period;
+			if (next < end) { //the frame was late, the next one is not hurried to catch up
+				late++;
+				next = end + period;
+			}
+			long wait;
+			while (running && (wait = next - System.nanoTime()) > 0)
+				LockSupport.parkNanos(this, wait);
+		}
+	}
+
+	/**
+	 * This method draws one frame in the back buffer and shows it.
+	 * The contents of the buffers can be lost (the display changed), then the frame is drawn again.
+	 */
+	void draw(GameSnapshot snapshot) {
+		int width = canvas.getWidth();
+		int height = canvas.getHeight();
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					renderer.render(g, snapshot, width, height);
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored());
+			strategy.show();
+		} while (strategy.contentsLost());
+		Toolkit.getDefaultToolkit().sync(); //some systems buffer the drawing, show it now
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	// the frames per second of the last second.
+	public double getFps() {
+		return fps;
+	}
+
+	// the frames per second from the start to the stop (or to now).
+	public double getAverageFps() {
+		long end = running || endNanos == 0 ? System.nanoTime() : endNanos;
+		return end == startNanos ? 0 : frames * 1000000000.0 / (end - startNanos);
+	}
+
+	// the average time to draw and show a frame, in milliseconds.
+	public double getFrameTime() {
+		return frames == 0 ? 0 : frameNanos / 1000000.0 / frames;
+	}
+
+	// the longest time to draw and show a frame, in milliseconds.
+	public double getMaxFrameTime() {
+		return maxFrameNanos / 1000000.0;
+	}
+
+	// the average time from a new snapshot to the frame that shows it, in milliseconds.
+	public double getSnapshotAge() {
+		int shown = frames - repeated;
+		return shown == 0 ? 0 : ageNanos / 1000000.0 / shown;
+	}
+
+	// the refresh rate that the loop runs at.
+	public double getRate() {
+		return period == 0 ? 0 : 1000000000.0 / period;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public int getLateFrames() {
+		return late;
+	}
+
+	public int getRepeatedFrames() {
+		return repeated;
+	}
+
+}
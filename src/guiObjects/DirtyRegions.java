@@ -0,0 +1,134 @@
+package guiObjects;
+
+import java.awt.Rectangle;
+
+/**
+ * This class collects the rectangles of the board that have to be painted again.
+ * A rectangle that touches one that is already in the list is joined to him, so a sprite that moved a little
+ * is one rectangle (the old and the new place together).
+ * The list has a maximum size, after that a new rectangle is joined to the rectangle that grows the least,
+ * so many small changes are never more than a few paints.
+ *
+ * The class is not synchronized, the user locks it (the game thread adds, the event thread takes).
+ *
+ * @author Yoav and Elad.
+ *
+ */
+public class DirtyRegions {
+
+	private final Rectangle[] rectangles;
+	private int size = 0;
+
+////////////////////////***Constructor****///////////////////////////////////////////
+
+	/**
+	 * @param maximum The most rectangles in the list.
+	 */
+	public DirtyRegions(int maximum) {
+		rectangles = new Rectangle[maximum];
+		for (int i=0; i<maximum; i++)
+			rectangles[i] = new Rectangle();
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method adds a rectangle to paint again (an empty rectangle is ignored).
+	 */
+	public void add(int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0)
+			return;
+		for (int i=0; i<size; i++)
+			if (touches(rectangles[i], x, y, width, height)) {
+				join(i, x, y, width, height);
+				return;
+			}
+		if (size < rectangles.length) {
+			rectangles[size++].setBounds(x, y, width, height);
+			return;
+		}
+		//full, join to the rectangle that grows the least
+		int best = 0;
+		long bestGrowth = Long.MAX_VALUE;
+		for (int i=0; i<size; i++) {
+			Rectangle r = rectangles[i];
+			long joined = (long)(Math.max(r.x + r.width, x + width) - Math.min(r.x, x))
+					* (Math.max(r.y + r.height, y + height) - Math.min(r.y, y));
+			long growth = joined - (long)r.width * r.height;
+			if (growth < bestGrowth) {
+				bestGrowth = growth;
+				best = i;
+			}
+		}
+		join(best, x, y, width, height);
+	}
+
+	public void add(Rectangle r) {
+		add(r.x, r.y, r.width, r.height);
+	}
+
+	//joins the rectangle to rectangles[i], and then joins to him the others that he touches now
+	private void join(int i, int x, int y, int width, int height) {
+		Rectangle r = rectangles[i];
+		int right = Math.max(r.x + r.width, x + width);
+		int bottom = Math.max(r.y + r.height, y + height);
+		r.x = Math.min(r.x, x);
+		r.y = Math.min(r.y, y);
+		r.width = right - r.x;
+		r.height = bottom - r.y;
+		boolean joined = true;
+		while (joined) {
+			joined = false;
+			for (int j=0; j<size; j++) {
+				Rectangle other = rectangles[j];
+				if (other != r && touches(r, other.x, other.y, other.width, other.height)) {
+					r.add(other);
+					remove(j); //the places change, r is the same object
+					joined = true;
+					break;
+				}
+			}
+		}
+	}
+
+	//removes rectangles[j], the last one takes his place
+	private void remove(int j) {
+		Rectangle removed = rectangles[j];
+		rectangles[j] = rectangles[size-1];
+		rectangles[size-1] = removed;
+		size--;
+	}
+
+	private static boolean touches(Rectangle r, int x, int y, int width, int height) {
+		return x <= r.x + r.width && r.x <= x + width && y <= r.y + r.height && r.y <= y + height;
+	}
+
+	/**
+	 * This method moves all the rectangles to the array, and clears the list.
+	 * @param target The rectangles are copied to the Rectangles in this array (must have the maximum size).
+	 * @return How many rectangles.
+	 */
+	public int drain(Rectangle[] target) {
+		int count = size;
+		for (int i=0; i<count; i++)
+			target[i].setBounds(rectangles[i]);
+		size = 0;
+		return count;
+	}
+
+	// removes all the rectangles.
+	public void clear() {
+		size = 0;
+	}
+
+////////////////////*** Getters and Setters**//////////////////////////////////////
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+}
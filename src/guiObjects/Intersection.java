@@ -0,0 +1,61 @@
+package guiObjects;
+/**
+ * This class checks if two segments intersect, from the int coordinates of their end points.
+ * It uses only orientation tests (the sign of a cross product, in long),
+ * so there are no slopes, no rounding and no objects.
+ *
+ * @author Yoav and Elad.
+ */
+public class Intersection {
+
+	private Intersection() {
+	}
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	/**
+	 * This method computes on which side of the line a-b the point c is.
+	 * @return 1 if c is on the left of a-b (counterclockwise), -1 if on the right, 0 if a, b and c are on one line.
+	 */
+	public static int orientation(int ax, int ay, int bx, int by, int cx, int cy) {
+		long cross = (long)(bx-ax)*(cy-ay) - (long)(by-ay)*(cx-ax);
+		return cross > 0 ? 1 : (cross < 0 ? -1 : 0);
+	}
+
+	/**
+	 * This method checks if the segments a-b and c-d cross each other:
+	 * every segment has one end point on every side of the other.
+	 * Touching (an end point on the other segment) and segments on the same line are not crossing.
+	 * @return True if the segments cross.
+	 */
+	public static boolean cross(int ax, int ay, int bx, int by, int cx, int cy, int dx, int dy) {
+		return orientation(ax, ay, bx, by, cx, cy) * orientation(ax, ay, bx, by, dx, dy) < 0
+				&& orientation(cx, cy, dx, dy, ax, ay) * orientation(cx, cy, dx, dy, bx, by) < 0;
+	}
+
+	/**
+	 * This method checks if the segments a-b and c-d have some common point,
+	 * including touching and segments on the same line that overlap.
+	 * @return True if the segments intersect.
+	 */
+	public static boolean intersect(int ax, int ay, int bx, int by, int cx, int cy, int dx, int dy) {
+		int o1 = orientation(ax, ay, bx, by, cx, cy);
+		int o2 = orientation(ax, ay, bx, by, dx, dy);
+		int o3 = orientation(cx, cy, dx, dy, ax, ay);
+		int o4 = orientation(cx, cy, dx, dy, bx, by);
+		if (o1*o2 < 0 && o3*o4 < 0)
+			return true;
+
+		//a point on the line of the other segment, it must be in the box of that segment
+		return (o1 == 0 && inBox(ax, ay, bx, by, cx, cy))
+				|| (o2 == 0 && inBox(ax, ay, bx, by, dx, dy))
+				|| (o3 == 0 && inBox(cx, cy, dx, dy, ax, ay))
+				|| (o4 == 0 && inBox(cx, cy, dx, dy, bx, by));
+	}
+
+	//is the point p in the box of the segment a-b
+	private static boolean inBox(int ax, int ay, int bx, int by, int px, int py) {
+		return Math.min(ax, bx) <= px && px <= Math.max(ax, bx) && Math.min(ay, by) <= py && py <= Math.max(ay, by);
+	}
+
+}
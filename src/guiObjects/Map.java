@@ -5,6 +5,7 @@ import java.io.IOException;
 
 import javax.imageio.ImageIO;
 
+import Coords.LocalProjector;
 import Coords.MyCoords;
 import GeoObjects.Point3D;
 /**
@@ -26,6 +27,8 @@ public class Map {
 	public final Point3D sw;
 	public final Point3D se;
 	MyCoords mc = new MyCoords();
+	public final LocalProjector projector; //distances and azimuths on the map, as a plane
+	private volatile Transform transform; //the coefficients for the last board size
 
 //////////////////***Constructor****///////////////////////////////////
 
@@ -41,6 +44,7 @@ public class Map {
 		ne = new Point3D( 32.105444,  35.212496, 0);
 		sw = new Point3D( 32.101899,  35.202447, 0);
 		se = new Point3D( 32.101899,  35.212496, 0);
+		projector = new LocalProjector(nw, LocalProjector.Mode.PLANAR);
 	}
 
 ////////////////////*** Methods ***/////////////////////
@@ -53,13 +57,90 @@ public class Map {
 		return myImage.getWidth();
 	}
 	/**
-	 * This function convert gps point to a pixel.
+	 * This function convert gps point to a pixel, with the precomputed {@link Transform} of this board size.
 	 * @return The pixel of the gps point on the map.
 	 * @param point gps point
 	 * @param width , width of the map in pixels
 	 * @param height , height of the map in pixels
 	 */
-	public Pixel gps2pixel(Point3D point, int widht, int height) { 
+	public Pixel gps2pixel(Point3D point, int widht, int height) {
+		Transform transform = getTransform(widht, height);
+		return new Pixel(transform.x(point.x(), point.y()), transform.y(point.x()));
+	}
+
+	/**
+	 * This function convert a pixel to gps point, with the precomputed {@link Transform} of this board size.
+	 * @return A gps point from pixel in the screen.
+	 * @param pixel pixel in the map
+	 * @param widht width of the map pixels
+	 * @param height height of the map pixels
+	 */
+	public Point3D pixel2gps(Pixel pixel, int widht, int height) {
+		Transform transform = getTransform(widht, height);
+		return new Point3D(transform.lat(pixel.y()), transform.lon(pixel.x(), pixel.y()), 0);
+	}
+
+	/**
+	 * This function convert many gps points to pixels in one loop, without creating objects.
+	 * @param lat The latitudes of the points.
+	 * @param lon The longitudes of the points.
+	 * @param count How many points to convert (the first ones in the arrays).
+	 * @param x The columns of the pixels are written here.
+	 * @param y The rows of the pixels are written here.
+	 * @param widht width of the map pixels
+	 * @param height height of the map pixels
+	 */
+	public void gps2pixels(double[] lat, double[] lon, int count, int[] x, int[] y, int widht, int height) {
+		Transform transform = getTransform(widht, height);
+		for (int i=0; i<count; i++) {
+			x[i] = transform.x(lat[i], lon[i]);
+			y[i] = transform.y(lat[i]);
+		}
+	}
+
+	/**
+	 * This function convert many pixels to gps points in one loop, without creating objects.
+	 * @param x The columns of the pixels.
+	 * @param y The rows of the pixels.
+	 * @param count How many pixels to convert (the first ones in the arrays).
+	 * @param lat The latitudes of the points are written here.
+	 * @param lon The longitudes of the points are written here.
+	 * @param widht width of the map pixels
+	 * @param height height of the map pixels
+	 */
+	public void pixels2gps(int[] x, int[] y, int count, double[] lat, double[] lon, int widht, int height) {
+		Transform transform = getTransform(widht, height);
+		for (int i=0; i<count; i++) {
+			lat[i] = transform.lat(y[i]);
+			lon[i] = transform.lon(x[i], y[i]);
+		}
+	}
+
+	/**
+	 * This method returns the coefficients of the conversions for this board size,
+	 * they are computed again only when the size was changed.
+	 * @param widht width of the map pixels
+	 * @param height height of the map pixels
+	 * @return The transform.
+	 */
+	public Transform getTransform(int widht, int height) {
+		Transform transform = this.transform;
+		if (transform == null || transform.width != widht || transform.height != height) {
+			transform = new Transform(widht, height);
+			this.transform = transform;
+		}
+		return transform;
+	}
+
+	/**
+	 * This function convert gps point to a pixel, the exact way (with the margins of the map on the earth).
+	 * It is slow, use it only for checking {@link #gps2pixel}.
+	 * @return The pixel of the gps point on the map.
+	 * @param point gps point
+	 * @param width , width of the map in pixels
+	 * @param height , height of the map in pixels
+	 */
+	public Pixel gps2pixelExact(Point3D point, int widht, int height) { 
 		double imageLatD = nw.x() - se.x();
 		double currentLatD = nw.x() - point.x();
 		double fractionNorth = currentLatD / imageLatD; 
@@ -76,14 +157,14 @@ public class Map {
 		return new Pixel((int)lonpixel, (int)latpixel);
 	}
 /**
- * This function convert a pixel to gps point.
+ * This function convert a pixel to gps point, the exact way (with the margins of the map on the earth).
+ * It is slow, use it only for checking {@link #pixel2gps}.
  * @return A gps point from pixel in the screen.
  * @param pixel pixel in the map
  * @param widht width of the map pixels
  * @param height height of the map pixels
  */
-	public Point3D pixel2gps (Pixel pixel, int widht, int height) {
-		//TODO
+	public Point3D pixel2gpsExact (Pixel pixel, int widht, int height) {
 		double ratioH = (double)pixel.y() / height;
 		double ratioW = (double)pixel.x() / widht;
 		double imageLatD = nw.x() - se.x();
@@ -130,5 +211,71 @@ public class Map {
 		
 		return (int)((pointsDis/currentLonDis) * widht);
 	}
-	
+
+////////////////////////////////***Inner classes****///////////////////////////////////
+
+	/**
+	 * The conversions between gps and pixels for one board size, as a few multiply-adds.
+	 * The row of a pixel is linear in the latitude. The margins of the map (left and right) at some row are
+	 * {@link MyCoords#midPoint} between the corners, that is lon = lon0 + asin(f*sin(d))*180/PI
+	 * (f is the fraction of the row, d the difference of the corners in radians). Here it is the line
+	 * lon0 + f*(lon1-lon0), between the exact margins at the top and at the bottom.
+	 * The difference is less than |d|^3/6 radians: for this map (d < 2E-6) less than 1E-18 degree,
+	 * millions times less than one pixel. So the pixel is the same as the exact one, unless the exact
+	 * value is on the border between two pixels (in 1E-9 pixel), and then they are different in one pixel.
+	 */
+	public class Transform {
+
+		private final int width;
+		private final int height;
+		private final double imageLatD; //nw.x - se.x
+		private final double left0; //the longitude of the left margin at the top
+		private final double leftD; //the change of the left margin from the top to the bottom
+		private final double right0;
+		private final double rightD;
+
+		private Transform(int width, int height) {
+			this.width = width;
+			this.height = height;
+			imageLatD = nw.x() - se.x();
+			left0 = mc.midPoint(nw, sw, 0).y();
+			leftD = mc.midPoint(nw, sw, 1).y() - left0;
+			right0 = mc.midPoint(ne, se, 0).y();
+			rightD = mc.midPoint(ne, se, 1).y() - right0;
+		}
+
+		// the column of the gps point.
+		public int x(double lat, double lon) {
+			double fractionNorth = (nw.x() - lat) / imageLatD;
+			double leftMergin = left0 + fractionNorth*leftD;
+			double rightMergin = right0 + fractionNorth*rightD;
+			return (int)((lon - leftMergin) / (rightMergin - leftMergin) * width);
+		}
+
+		// the row of the gps point.
+		public int y(double lat) {
+			return (int)((nw.x() - lat) / imageLatD * height);
+		}
+
+		// the latitude of the pixel.
+		public double lat(int y) {
+			return nw.x() - (double)y / height * imageLatD;
+		}
+
+		// the longitude of the pixel.
+		public double lon(int x, int y) {
+			double ratioH = (double)y / height;
+			double leftMergin = left0 + ratioH*leftD;
+			double rightMergin = right0 + ratioH*rightD;
+			return leftMergin + (double)x / width * (rightMergin - leftMergin);
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+	}
 }
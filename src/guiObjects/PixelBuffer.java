@@ -0,0 +1,98 @@
+package guiObjects;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import GeoObjects.GenericGeoObject;
+import GeoObjects.ObjectTable;
+import GeoObjects.Point3D;
+/**
+ * This class keeps the locations of objects and their pixels in primitive arrays,
+ * so all of them are converted in one loop of {@link Map#gps2pixels}.
+ * The arrays only grow, so one buffer can be used again in every tick without new objects.
+ *
+ * @author Yoav and Elad.
+ */
+public class PixelBuffer {
+
+	public double[] lat = new double[16];
+	public double[] lon = new double[16];
+	public int[] x = new int[16];
+	public int[] y = new int[16];
+	private int size = 0;
+
+///////////////////////////*** Methods ***//////////////////////////////////////////
+
+	// removes all the points, the arrays are kept.
+	public void clear() {
+		size = 0;
+	}
+
+	public void add(Point3D point) {
+		add(point.x(), point.y());
+	}
+
+	public void add(double lat, double lon) {
+		if (size == this.lat.length) {
+			this.lat = Arrays.copyOf(this.lat, size*2);
+			this.lon = Arrays.copyOf(this.lon, size*2);
+			x = Arrays.copyOf(x, size*2);
+			y = Arrays.copyOf(y, size*2);
+		}
+		this.lat[size] = lat;
+		this.lon[size] = lon;
+		size++;
+	}
+
+	public void addAll(Collection<? extends GenericGeoObject> objects) {
+		for (GenericGeoObject object: objects)
+			add(object.getLocation());
+	}
+
+	// adds the locations from the arrays of the table, in the order of the slots (the order of the iteration).
+	public void addAll(ObjectTable<? extends GenericGeoObject> table) {
+		for (int slot=table.first(); slot>=0; slot=table.next(slot))
+			add(table.getLat(slot), table.getLon(slot));
+	}
+
+	public void project(ObjectTable<? extends GenericGeoObject> table, Map map, int widht, int height) {
+		clear();
+		addAll(table);
+		project(map, widht, height);
+	}
+
+	// clears the buffer, adds the locations of the arrays and converts them to pixels.
+	public void project(double[] lat, double[] lon, Map map, int widht, int height) {
+		clear();
+		for (int i=0; i<lat.length; i++)
+			add(lat[i], lon[i]);
+		project(map, widht, height);
+	}
+
+	/**
+	 * This method clears the buffer, adds the objects and converts them to pixels.
+	 * @param objects The objects, their pixels are in the same order.
+	 * @param map The map.
+	 * @param widht width of the map pixels
+	 * @param height height of the map pixels
+	 */
+	public void project(Collection<? extends GenericGeoObject> objects, Map map, int widht, int height) {
+		clear();
+		addAll(objects);
+		project(map, widht, height);
+	}
+
+	// converts all the points to pixels.
+	public void project(Map map, int widht, int height) {
+		map.gps2pixels(lat, lon, size, x, y, widht, height);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Pixel getPixel(int i) {
+		return new Pixel(x[i], y[i]);
+	}
+
+}
@@ -40,6 +40,8 @@ public class Segment {
 	 * @return The pixel of the cuuting.
 	 */
 	public Pixel cuttingPoint(Segment other) {
+		if (!intersect(other)) //most of the segments are far, no need to compute the lines
+			return null;
 		Pixel cuttingLines = line.cuttingPoint(other.line);
 		if (cuttingLines == null)
 			return null;
@@ -53,6 +55,15 @@ public class Segment {
 		return null;
 	}
 	
+	/**
+	 * This method checks if the segments have some common point (with exact int math, see {@link Intersection}).
+	 * @param other The other segment.
+	 * @return True if they intersect or touch.
+	 */
+	public boolean intersect(Segment other) {
+		return Intersection.intersect(p1.x(), p1.y(), p2.x(), p2.y(), other.p1.x(), other.p1.y(), other.p2.x(), other.p2.y());
+	}
+
 	/**
 	 * This method checks if there is a some pixel on the segment.
 	 * @param pixel That we will check with.
@@ -65,6 +76,14 @@ public class Segment {
 	}
 	
 
+	public Pixel getP1() {
+		return p1;
+	}
+
+	public Pixel getP2() {
+		return p2;
+	}
+
 	public String toString() {
 		return line.toString() + "[" + p1.toString() + "," + p2.toString() + "]";
 	}